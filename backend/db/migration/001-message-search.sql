@@ -0,0 +1,45 @@
+-- Full-text and substring search over chat_messages (MessageSearchService).
+--
+-- Run with psql against a live database, outside a transaction block (no --single-transaction):
+-- the backfill commits per batch and the indexes are built CONCURRENTLY, so chat_messages stays
+-- writable throughout. Safe to re-run. Run before 002-chat-messages-partitioning.sql.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+-- A nullable column without a default is a catalog-only change. A STORED generated column would
+-- rewrite the whole table under an ACCESS EXCLUSIVE lock, so the trigger fills it instead.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS content_tsv tsvector;
+
+CREATE OR REPLACE FUNCTION chat_messages_content_tsv() RETURNS trigger AS $$
+BEGIN
+  NEW.content_tsv := to_tsvector('simple', coalesce(NEW.content, ''));
+  RETURN NEW;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS chat_messages_content_tsv ON chat_messages;
+CREATE TRIGGER chat_messages_content_tsv BEFORE INSERT OR UPDATE OF content ON chat_messages
+  FOR EACH ROW EXECUTE FUNCTION chat_messages_content_tsv();
+
+-- Rows written before the trigger existed, in primary key order, one short transaction per batch.
+DO $$
+DECLARE
+  done uuid := '00000000-0000-0000-0000-000000000000';
+  upto uuid;
+BEGIN
+  LOOP
+    SELECT id INTO upto
+      FROM (SELECT id FROM chat_messages WHERE id > done ORDER BY id LIMIT 5000) batch
+      ORDER BY id DESC LIMIT 1;
+    EXIT WHEN NOT FOUND;
+    UPDATE chat_messages SET content_tsv = to_tsvector('simple', coalesce(content, ''))
+      WHERE id > done AND id <= upto AND content_tsv IS NULL;
+    COMMIT;
+    done := upto;
+  END LOOP;
+END $$;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_content_tsv
+  ON chat_messages USING GIN (friendship_id, content_tsv);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_content_trgm
+  ON chat_messages USING GIN (friendship_id, content gin_trgm_ops);
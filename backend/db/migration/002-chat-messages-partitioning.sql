@@ -0,0 +1,83 @@
+-- Converts chat_messages into a table range-partitioned by month on created_at
+-- (chat.partitioning.enabled, ChatPartitionMaintenance).
+--
+-- Run with psql while the backend is stopped: the conversion takes ACCESS EXCLUSIVE locks on
+-- chat_messages and builds the (id, created_at) primary key index on the existing rows. No rows
+-- are copied; the existing table becomes chat_messages_legacy, the partition for everything
+-- before next month. Runs as one transaction and does nothing if chat_messages is already
+-- partitioned. Run after 001-message-search.sql.
+
+\set ON_ERROR_STOP on
+
+BEGIN;
+
+DO $$
+DECLARE
+  bound timestamptz := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+                       + interval '1 month';
+  search boolean;
+  seq boolean;
+  r record;
+BEGIN
+  IF (SELECT relkind FROM pg_class WHERE oid = to_regclass('chat_messages')) = 'p' THEN
+    RAISE NOTICE 'chat_messages is already partitioned';
+    RETURN;
+  END IF;
+  search := EXISTS (SELECT 1 FROM information_schema.columns
+                    WHERE table_schema = current_schema() AND table_name = 'chat_messages'
+                      AND column_name = 'content_tsv');
+  seq := EXISTS (SELECT 1 FROM information_schema.columns
+                 WHERE table_schema = current_schema() AND table_name = 'chat_messages'
+                   AND column_name = 'seq');
+
+  ALTER TABLE chat_messages RENAME TO chat_messages_legacy;
+  -- Index and constraint names are schema-wide; free them up for the partitioned parent.
+  FOR r IN SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+           WHERE i.indrelid = 'chat_messages_legacy'::regclass LOOP
+    EXECUTE format('ALTER INDEX %I RENAME TO %I', r.relname, left(r.relname, 55) || '_legacy');
+  END LOOP;
+  -- The parent's trigger is cloned onto every partition, the legacy one included.
+  DROP TRIGGER IF EXISTS chat_messages_content_tsv ON chat_messages_legacy;
+
+  CREATE TABLE chat_messages (LIKE chat_messages_legacy INCLUDING DEFAULTS INCLUDING GENERATED)
+    PARTITION BY RANGE (created_at);
+  ALTER TABLE chat_messages ADD PRIMARY KEY (id, created_at);
+  FOR r IN SELECT conname, pg_get_constraintdef(oid) AS def FROM pg_constraint
+           WHERE conrelid = 'chat_messages_legacy'::regclass AND contype = 'f' LOOP
+    EXECUTE format('ALTER TABLE chat_messages ADD CONSTRAINT %I %s', r.conname, r.def);
+  END LOOP;
+
+  -- The partition takes the parent's (id, created_at) key; a table can only have one.
+  FOR r IN SELECT conname FROM pg_constraint
+           WHERE conrelid = 'chat_messages_legacy'::regclass AND contype = 'p' LOOP
+    EXECUTE format('ALTER TABLE chat_messages_legacy DROP CONSTRAINT %I', r.conname);
+  END LOOP;
+
+  -- Validating the constraint up front lets ATTACH skip its own scan of the rows.
+  EXECUTE format('ALTER TABLE chat_messages_legacy ADD CONSTRAINT chat_messages_legacy_range'
+                 ' CHECK (created_at < %L)', bound);
+  EXECUTE format('ALTER TABLE chat_messages ATTACH PARTITION chat_messages_legacy'
+                 ' FOR VALUES FROM (MINVALUE) TO (%L)', bound);
+  CREATE TABLE chat_messages_default PARTITION OF chat_messages DEFAULT;
+
+  -- Indexes on a partitioned table are created on each partition. The legacy partition already
+  -- has matching ones under their _legacy names, which are attached instead of rebuilt.
+  CREATE INDEX idx_chat_messages_friendship_created_id
+    ON chat_messages (friendship_id, created_at DESC, id DESC);
+  -- Without seq the backend adds the column and this index itself on its next start.
+  IF seq THEN
+    CREATE INDEX idx_chat_messages_friendship_seq ON chat_messages (friendship_id, seq);
+  END IF;
+  IF search THEN
+    CREATE INDEX idx_chat_messages_content_tsv
+      ON chat_messages USING GIN (friendship_id, content_tsv);
+    CREATE INDEX idx_chat_messages_content_trgm
+      ON chat_messages USING GIN (friendship_id, content gin_trgm_ops);
+    IF to_regproc('chat_messages_content_tsv') IS NOT NULL THEN
+      CREATE TRIGGER chat_messages_content_tsv BEFORE INSERT OR UPDATE OF content ON chat_messages
+        FOR EACH ROW EXECUTE FUNCTION chat_messages_content_tsv();
+    END IF;
+  END IF;
+END $$;
+
+COMMIT;
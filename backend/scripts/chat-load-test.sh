@@ -0,0 +1,19 @@
+#!/usr/bin/env bash
+# STOMP load test against a running backend: builds the jmh profile and runs
+# com.flow.backend.bench.ChatLoadTest with the given key=value arguments, e.g.
+#
+#   scripts/chat-load-test.sh friendship=<id> token-a=<jwt> token-b=<jwt> \
+#     url=ws://localhost:8080/ws/websocket senders=4 subscribers=50 messages=200 rate=20
+#
+# token-a and token-b belong to the conversation's two participants. Use a dedicated
+# conversation, since every message sent is stored, and start the server with
+# chat.rate-limit.enabled=false or the per-user send budget caps the rate. Exits non-zero when
+# deliveries are missing or any subscriber saw a sender's messages out of order.
+#
+# idle=<n> also holds n sessions open that take no part in the conversation, e.g. idle=5000 to
+# measure delivery latency with 5k concurrent sessions (results in the README).
+set -euo pipefail
+cd "$(dirname "$0")/.."
+./mvnw -B -q -Pjmh compile dependency:build-classpath -Dmdep.outputFile=target/bench.classpath
+exec "${JAVA_HOME:+$JAVA_HOME/bin/}java" -cp "target/classes:$(cat target/bench.classpath)" \
+  com.flow.backend.bench.ChatLoadTest "$@"
@@ -0,0 +1,98 @@
+package com.flow.backend.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.flow.backend.dto.ChatMessageDTO;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+// The per-send cost of turning a chat message into the broker message, as SimpMessagingTemplate's
+// convertAndSend does it with the converters the STOMP configuration registers, and as
+// ChatBroadcaster does it with its prebuilt ObjectWriter and LocalChatFanout's byte[] message.
+// Both encode once per send; the broker then hands the same payload to every subscriber. The
+// channel only hands the message to a Blackhole, so nothing but the encode path is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ChatBroadcastEncodeBenchmark {
+
+  private static final String DESTINATION = "/topic/chats/" + UUID.randomUUID();
+
+  private SimpMessagingTemplate template;
+  private ObjectWriter messageWriter;
+  private ChatMessageDTO message;
+  private Blackhole blackhole;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    this.blackhole = blackhole;
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    MappingJackson2MessageConverter json = new MappingJackson2MessageConverter();
+    json.setObjectMapper(objectMapper);
+    MessageChannel channel =
+        (Message<?> sent, long timeout) -> {
+          this.blackhole.consume(sent);
+          return true;
+        };
+    template = new SimpMessagingTemplate(channel);
+    template.setMessageConverter(
+        new CompositeMessageConverter(
+            List.of(new StringMessageConverter(), new ByteArrayMessageConverter(), json)));
+    messageWriter = objectMapper.writerFor(ChatMessageDTO.class);
+
+    message =
+        new ChatMessageDTO(
+            UUID.randomUUID(),
+            UUID.randomUUID(),
+            UUID.randomUUID(),
+            "Bench Sender",
+            "https://example.com/avatars/bench-sender.png",
+            "A typical chat message, a sentence or two long, with nothing unusual in it.",
+            Instant.now());
+    message.setSeq(4242L);
+  }
+
+  @Benchmark
+  public void convertAndSend() {
+    template.convertAndSend(DESTINATION, message);
+  }
+
+  @Benchmark
+  public void preEncoded() throws Exception {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+    accessor.setLeaveMutable(true);
+    template.send(
+        DESTINATION,
+        MessageBuilder.createMessage(
+            messageWriter.writeValueAsBytes(message), accessor.getMessageHeaders()));
+  }
+}
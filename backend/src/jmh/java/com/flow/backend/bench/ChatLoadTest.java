@@ -0,0 +1,241 @@
+package com.flow.backend.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+// Drives one conversation of a running server over STOMP: sender sessions of both participants
+// send at a fixed rate while subscriber sessions count what arrives, and idle sessions only hold
+// connections open the way the rest of a server's users would. Reports throughput, delivery
+// latency from send to receipt, and messages that reached a subscriber out of their sender's
+// order, which the broker and outbound channels must never produce. Run through
+// scripts/chat-load-test.sh; arguments are key=value pairs, see usage().
+public class ChatLoadTest {
+
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private final String url;
+  private final String friendshipId;
+  private final String[] tokens;
+  private final int senders;
+  private final int subscribers;
+  private final int idle;
+  private final int messages;
+  private final double rate;
+
+  private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+  private final AtomicLong received = new AtomicLong();
+  private final AtomicLong reordered = new AtomicLong();
+
+  private ChatLoadTest(Map<String, String> args) {
+    url = args.getOrDefault("url", "ws://localhost:8080/ws/websocket");
+    friendshipId = required(args, "friendship");
+    tokens = new String[] {required(args, "token-a"), required(args, "token-b")};
+    senders = Integer.parseInt(args.getOrDefault("senders", "4"));
+    subscribers = Integer.parseInt(args.getOrDefault("subscribers", "50"));
+    idle = Integer.parseInt(args.getOrDefault("idle", "0"));
+    messages = Integer.parseInt(args.getOrDefault("messages", "200"));
+    rate = Double.parseDouble(args.getOrDefault("rate", "20"));
+  }
+
+  public static void main(String[] argv) throws Exception {
+    Map<String, String> args = new HashMap<>();
+    for (String arg : argv) {
+      int eq = arg.indexOf('=');
+      if (eq <= 0) usage();
+      args.put(arg.substring(0, eq), arg.substring(eq + 1));
+    }
+    if (!args.containsKey("friendship")) usage();
+    new ChatLoadTest(args).run();
+  }
+
+  private static void usage() {
+    System.err.println(
+        "usage: ChatLoadTest friendship=<id> token-a=<jwt> token-b=<jwt>"
+            + " [url=ws://localhost:8080/ws/websocket] [senders=4] [subscribers=50] [idle=0]"
+            + " [messages=200 per sender] [rate=20 per sender per second]");
+    System.exit(2);
+  }
+
+  private static String required(Map<String, String> args, String key) {
+    String value = args.get(key);
+    if (value == null || value.isBlank()) usage();
+    return value;
+  }
+
+  private void run() throws Exception {
+    WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+    // Raw bytes both ways: the text/plain sends and the application/json broadcasts.
+    client.setMessageConverter(
+        new ByteArrayMessageConverter() {
+          @Override
+          protected boolean supportsMimeType(MessageHeaders headers) {
+            return true;
+          }
+        });
+    client.setInboundMessageSizeLimit(1 << 20);
+    String topic = "/topic/chats/" + friendshipId;
+
+    List<StompSession> sessions = new ArrayList<>();
+    long expected = (long) senders * messages * subscribers;
+    CountDownLatch done = new CountDownLatch(1);
+    for (int i = 0; i < subscribers; i++) {
+      StompSession session = connect(client, tokens[i % 2]);
+      sessions.add(session);
+      long[] lastSeen = new long[senders];
+      Arrays.fill(lastSeen, -1);
+      session.subscribe(
+          topic,
+          new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+              return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+              onMessage((byte[]) payload, lastSeen, expected, done);
+            }
+          });
+    }
+    List<StompSession> senderSessions = new ArrayList<>();
+    for (int i = 0; i < senders; i++) {
+      StompSession session = connect(client, tokens[i % 2]);
+      sessions.add(session);
+      senderSessions.add(session);
+    }
+    // Idle sessions subscribe to their own queue like a connected client that is not in this
+    // conversation, so the broker's registry holds as many subscriptions as sessions.
+    for (int i = 0; i < idle; i++) {
+      StompSession session = connect(client, tokens[i % 2]);
+      sessions.add(session);
+      session.subscribe("/user/queue/errors", new StompSessionHandlerAdapter() {});
+      if ((i + 1) % 1000 == 0) System.out.printf("%d idle sessions connected%n", i + 1);
+    }
+    // Subscriptions are asynchronous; give them a moment to reach the broker.
+    Thread.sleep(1000);
+
+    System.out.printf(
+        "%d senders x %d messages at %.1f/s, %d subscribers, %d idle sessions,"
+            + " %d deliveries expected%n",
+        senders, messages, rate, subscribers, idle, expected);
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(senders);
+    long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    long start = System.nanoTime();
+    for (int s = 0; s < senders; s++) {
+      int sender = s;
+      StompSession session = senderSessions.get(s);
+      AtomicLong next = new AtomicLong();
+      scheduler.scheduleAtFixedRate(
+          () -> {
+            long n = next.getAndIncrement();
+            if (n >= messages) return;
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination("/app/chats/" + friendshipId + "/send");
+            headers.setContentType(MimeTypeUtils.TEXT_PLAIN);
+            String body = "load " + sender + " " + n + " " + System.nanoTime();
+            try {
+              session.send(headers, body.getBytes(StandardCharsets.UTF_8));
+            } catch (RuntimeException e) {
+              // A task that throws is never run again; report it and keep the schedule.
+              System.err.println("Send failed: " + e.getMessage());
+            }
+          },
+          0,
+          periodNanos,
+          TimeUnit.NANOSECONDS);
+    }
+
+    long sendSeconds = (long) Math.ceil(messages / rate);
+    boolean complete = done.await(sendSeconds + 30, TimeUnit.SECONDS);
+    long elapsed = System.nanoTime() - start;
+    scheduler.shutdownNow();
+    for (StompSession session : sessions) session.disconnect();
+
+    report(expected, elapsed, complete);
+    System.exit(complete && reordered.get() == 0 ? 0 : 1);
+  }
+
+  private StompSession connect(WebSocketStompClient client, String token) throws Exception {
+    StompHeaders connect = new StompHeaders();
+    connect.add("Authorization", "Bearer " + token);
+    return client
+        .connectAsync(
+            url,
+            new WebSocketHttpHeaders(),
+            connect,
+            new StompSessionHandlerAdapter() {
+              @Override
+              public void handleTransportError(StompSession session, Throwable e) {
+                System.err.println("Transport error: " + e.getMessage());
+              }
+            })
+        .get(10, TimeUnit.SECONDS);
+  }
+
+  private void onMessage(byte[] payload, long[] lastSeen, long expected, CountDownLatch done) {
+    long now = System.nanoTime();
+    String content;
+    try {
+      JsonNode message = JSON.readTree(payload);
+      content = message.path("content").asText("");
+    } catch (IOException e) {
+      return;
+    }
+    String[] parts = content.split(" ");
+    if (parts.length != 4 || !parts[0].equals("load")) return;
+    int sender = Integer.parseInt(parts[1]);
+    long n = Long.parseLong(parts[2]);
+    latencies.add(now - Long.parseLong(parts[3]));
+    synchronized (lastSeen) {
+      if (n < lastSeen[sender]) reordered.incrementAndGet();
+      lastSeen[sender] = Math.max(lastSeen[sender], n);
+    }
+    if (received.incrementAndGet() == expected) done.countDown();
+  }
+
+  private void report(long expected, long elapsedNanos, boolean complete) {
+    long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+    double seconds = elapsedNanos / 1e9;
+    System.out.printf(
+        "received %d of %d deliveries in %.1f s (%.0f deliveries/s)%s%n",
+        received.get(), expected, seconds, received.get() / seconds, complete ? "" : ", TIMED OUT");
+    if (sorted.length > 0) {
+      System.out.printf(
+          "latency ms: p50 %.1f  p95 %.1f  p99 %.1f  max %.1f%n",
+          percentile(sorted, 0.50),
+          percentile(sorted, 0.95),
+          percentile(sorted, 0.99),
+          sorted[sorted.length - 1] / 1e6);
+    }
+    System.out.printf("out of sender order: %d%n", reordered.get());
+  }
+
+  private static double percentile(long[] sorted, double p) {
+    int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+}
@@ -0,0 +1,96 @@
+package com.flow.backend.bench;
+
+import com.flow.backend.config.JwtProperties;
+import com.flow.backend.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+// JwtUtil.verify on a token it has seen before against one it has not, which pays for the
+// signature check and claims parsing. rebuildParser is what every verification cost before the
+// parser and key were built once: a fresh key and JwtParser per call. Needs no database.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtVerifyBenchmark {
+
+  private static final String SECRET = "jmh-benchmark-secret-".repeat(4);
+  private static final int TOKENS = 1024;
+
+  private AnnotationConfigApplicationContext cached;
+  private AnnotationConfigApplicationContext uncached;
+  private JwtUtil cachedJwt;
+  private JwtUtil uncachedJwt;
+  private String[] tokens;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void start() {
+    cached = context(10_000);
+    cachedJwt = cached.getBean(JwtUtil.class);
+    // With room for one entry every new token clears the cache, so alternating tokens never hit.
+    uncached = context(1);
+    uncachedJwt = uncached.getBean(JwtUtil.class);
+    tokens = new String[TOKENS];
+    for (int i = 0; i < TOKENS; i++) {
+      tokens[i] = cachedJwt.generateToken("user" + i + "@bench.local", "Bench User", null, "g" + i);
+    }
+    cachedJwt.verify(tokens[0]);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    cached.close();
+    uncached.close();
+  }
+
+  @Benchmark
+  public Optional<Claims> cacheHit() {
+    return cachedJwt.verify(tokens[0]);
+  }
+
+  @Benchmark
+  public Optional<Claims> coldParse() {
+    next = (next + 1) % TOKENS;
+    return uncachedJwt.verify(tokens[next]);
+  }
+
+  @Benchmark
+  public Claims rebuildParser() {
+    return Jwts.parser()
+        .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+        .build()
+        .parseSignedClaims(tokens[0])
+        .getPayload();
+  }
+
+  private static AnnotationConfigApplicationContext context(int cacheSize) {
+    JwtProperties properties = new JwtProperties();
+    properties.setSecret(SECRET);
+    properties.setCacheSize(cacheSize);
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    context.registerBean(JwtProperties.class, () -> properties);
+    context.registerBean(JwtUtil.class);
+    context.refresh();
+    return context;
+  }
+}
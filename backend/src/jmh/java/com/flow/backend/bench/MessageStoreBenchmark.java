@@ -0,0 +1,121 @@
+package com.flow.backend.bench;
+
+import com.flow.backend.FlowApplication;
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.MessageCursor;
+import com.flow.backend.model.Friendship;
+import com.flow.backend.model.User;
+import com.flow.backend.repository.FriendshipRepository;
+import com.flow.backend.repository.UserRepository;
+import com.flow.backend.service.MessageStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Both MessageStore engines behind the same application context the server runs, against the
+// database in the usual DB_URL/DB_USERNAME/DB_PASSWORD environment (plus the other variables
+// application.properties requires). Each run seeds its own conversation and removes it afterwards.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class MessageStoreBenchmark {
+
+  private static final int SEEDED = 10_000;
+  private static final int PAGE = 50;
+
+  @Param({"jpa", "mmap"})
+  public String engine;
+
+  private ConfigurableApplicationContext context;
+  private MessageStore store;
+  private User sender;
+  private User recipient;
+  private UUID friendshipId;
+  private MessageCursor middle;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    Path directory = Files.createTempDirectory("bench-messages");
+    context =
+        new SpringApplicationBuilder(FlowApplication.class)
+            .properties(
+                "server.port=0",
+                "spring.devtools.restart.enabled=false",
+                "logging.level.root=WARN",
+                "chat.store.engine=" + engine,
+                "chat.store.mmap.directory=" + directory)
+            .run();
+    store = context.getBean(MessageStore.class);
+
+    UserRepository users = context.getBean(UserRepository.class);
+    String run = UUID.randomUUID().toString();
+    sender = users.save(new User("a-" + run + "@bench.local", "Bench A", null, "a-" + run));
+    recipient = users.save(new User("b-" + run + "@bench.local", "Bench B", null, "b-" + run));
+    friendshipId =
+        context.getBean(FriendshipRepository.class).save(new Friendship(sender, recipient)).getId();
+
+    for (int i = 0; i < SEEDED; i++) {
+      ChatMessageDTO saved = store.append(draft(i));
+      if (i == SEEDED / 2) middle = MessageCursor.of(saved);
+    }
+    // Until autovacuum gets to it the planner estimates the seeded conversation from the table's
+    // old statistics and plans the newest page as a sort of every row in it.
+    if ("jpa".equals(engine)) context.getBean(JdbcTemplate.class).execute("analyze chat_messages");
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    while (store.deleteBatch(friendshipId, 1000) > 0) {}
+    context.getBean(FriendshipRepository.class).deleteById(friendshipId);
+    context.getBean(UserRepository.class).deleteAll(List.of(sender, recipient));
+    context.close();
+  }
+
+  @Benchmark
+  public ChatMessageDTO append() {
+    return store.append(draft(0));
+  }
+
+  @Benchmark
+  public List<ChatMessageDTO> newestPage() {
+    return store.findBefore(friendshipId, null, PAGE);
+  }
+
+  @Benchmark
+  public List<ChatMessageDTO> olderPage() {
+    return store.findBefore(friendshipId, middle, PAGE);
+  }
+
+  private ChatMessageDTO draft(int i) {
+    return new ChatMessageDTO(
+        null,
+        friendshipId,
+        sender.getId(),
+        sender.getName(),
+        null,
+        "Benchmark message " + i + " with a typical sentence or two of chat text in it.",
+        null);
+  }
+}
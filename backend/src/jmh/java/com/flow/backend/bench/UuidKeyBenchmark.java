@@ -0,0 +1,114 @@
+package com.flow.backend.bench;
+
+import com.flow.backend.util.UuidV7;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Random v4 against time-ordered v7 primary keys on a scratch table shaped like chat_messages, in
+// the database from DB_URL/DB_USERNAME/DB_PASSWORD. Each trial seeds the table, then times batches
+// of inserts as it keeps growing; the primary key index size per row is printed at the end of the
+// trial, since random keys split and half-fill pages all over the index while ordered ones only
+// ever fill its right edge. The table is dropped afterwards.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class UuidKeyBenchmark {
+
+  private static final int SEEDED = 200_000;
+  private static final int BATCH = 200;
+
+  @Param({"v4", "v7"})
+  public String keys;
+
+  private Connection connection;
+  private PreparedStatement insert;
+  private String table;
+  private UUID friendshipId;
+  private UUID senderId;
+
+  @Setup(Level.Trial)
+  public void start() throws SQLException {
+    connection =
+        DriverManager.getConnection(
+            System.getenv("DB_URL"), System.getenv("DB_USERNAME"), System.getenv("DB_PASSWORD"));
+    table = "bench_uuid_keys_" + keys;
+    try (Statement st = connection.createStatement()) {
+      st.execute("drop table if exists " + table);
+      st.execute(
+          "create table "
+              + table
+              + " (id uuid primary key, friendship_id uuid not null, sender_id uuid not null,"
+              + " content text not null, created_at timestamptz not null)");
+    }
+    connection.setAutoCommit(false);
+    insert =
+        connection.prepareStatement(
+            "insert into "
+                + table
+                + " (id, friendship_id, sender_id, content, created_at) values (?, ?, ?, ?, ?)");
+    friendshipId = UUID.randomUUID();
+    senderId = UUID.randomUUID();
+    for (int i = 0; i < SEEDED / BATCH; i++) insertBatch();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws SQLException {
+    try (Statement st = connection.createStatement();
+        ResultSet rs =
+            st.executeQuery(
+                "select count(*), pg_relation_size('" + table + "_pkey') from " + table)) {
+      rs.next();
+      long rows = rs.getLong(1);
+      long bytes = rs.getLong(2);
+      System.out.printf(
+          "%n%s primary key: %d rows, %.1f MB, %.1f bytes per row%n",
+          keys, rows, bytes / 1048576.0, (double) bytes / rows);
+    }
+    connection.rollback();
+    try (Statement st = connection.createStatement()) {
+      st.execute("drop table " + table);
+    }
+    connection.commit();
+    connection.close();
+  }
+
+  // One commit of BATCH messages, a full write-behind flush at the default batch size.
+  @Benchmark
+  public void insertBatch() throws SQLException {
+    Timestamp now = Timestamp.from(Instant.now());
+    for (int i = 0; i < BATCH; i++) {
+      insert.setObject(1, "v7".equals(keys) ? UuidV7.generate() : UUID.randomUUID());
+      insert.setObject(2, friendshipId);
+      insert.setObject(3, senderId);
+      insert.setString(4, "Benchmark message " + i + " with a typical sentence of chat text.");
+      insert.setTimestamp(5, now);
+      insert.addBatch();
+    }
+    insert.executeBatch();
+    connection.commit();
+  }
+}
@@ -0,0 +1,130 @@
+package com.flow.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+// Executors for the STOMP client inbound, client outbound and broker channels. Each one reports
+// how long tasks wait before running and how long they run, so a blocking handler on one channel
+// shows up before it stalls every session. The broker only routes and never blocks; it runs on
+// exactly one thread, whatever its pool is configured to, because a second thread could pass it
+// messages in a different order than they were published. It stays on that thread with virtual
+// threads on.
+@Component
+public class ChatChannelExecutors {
+
+  private static final Logger log = LoggerFactory.getLogger(ChatChannelExecutors.class);
+
+  @Autowired private ChatChannelProperties properties;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private Executor inbound;
+  private Executor outbound;
+  private Executor broker;
+
+  @PostConstruct
+  public void init() {
+    inbound = create("inbound", properties.getInbound(), properties.isVirtualThreads());
+    outbound = create("outbound", properties.getOutbound(), properties.isVirtualThreads());
+    ChatChannelProperties.Pool configured = properties.getBroker();
+    if (configured.getCorePoolSize() != 1 || configured.getMaxPoolSize() != 1) {
+      log.warn("Ignoring chat.channels.broker pool sizes; the broker channel uses one thread");
+    }
+    ChatChannelProperties.Pool single =
+        new ChatChannelProperties.Pool(1, 1, configured.getQueueCapacity());
+    broker = create("broker", single, false);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    for (Executor executor : new Executor[] {inbound, outbound, broker}) {
+      if (executor instanceof ThreadPoolTaskExecutor pool) pool.shutdown();
+      else if (executor instanceof SimpleAsyncTaskExecutor simple) simple.close();
+    }
+  }
+
+  public Executor getInbound() {
+    return inbound;
+  }
+
+  public Executor getOutbound() {
+    return outbound;
+  }
+
+  public Executor getBroker() {
+    return broker;
+  }
+
+  private Executor create(String channel, ChatChannelProperties.Pool pool, boolean virtual) {
+    Tags tags = Tags.of("channel", channel);
+    AtomicInteger active = new AtomicInteger();
+    TaskDecorator decorator = measure(tags, active);
+    String prefix = "stomp-" + channel + "-";
+
+    if (virtual) {
+      SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+      executor.setVirtualThreads(true);
+      executor.setTaskDecorator(decorator);
+      meterRegistry.gauge("chat.ws.executor.active", tags, active);
+      return executor;
+    }
+
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix(prefix);
+    executor.setCorePoolSize(pool.getCorePoolSize());
+    executor.setMaxPoolSize(pool.getMaxPoolSize());
+    executor.setQueueCapacity(pool.getQueueCapacity());
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.setTaskDecorator(decorator);
+    executor.initialize();
+    meterRegistry.gauge("chat.ws.executor.active", tags, active);
+    meterRegistry.gauge(
+        "chat.ws.executor.queued", tags, executor, ThreadPoolTaskExecutor::getQueueSize);
+    meterRegistry.gauge(
+        "chat.ws.executor.threads", tags, executor, ThreadPoolTaskExecutor::getPoolSize);
+    return executor;
+  }
+
+  // Decoration happens on the submitting thread, so the wait timer covers the time in the queue.
+  private TaskDecorator measure(Tags tags, AtomicInteger active) {
+    Timer wait =
+        Timer.builder("chat.ws.executor.wait")
+            .description("Time a channel task waited before it started")
+            .tags(tags)
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+    Timer run =
+        Timer.builder("chat.ws.executor.run")
+            .description("Time a channel task took to run")
+            .tags(tags)
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+    return task -> {
+      long submitted = System.nanoTime();
+      return () -> {
+        long start = System.nanoTime();
+        wait.record(start - submitted, TimeUnit.NANOSECONDS);
+        active.incrementAndGet();
+        try {
+          task.run();
+        } finally {
+          active.decrementAndGet();
+          run.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+      };
+    };
+  }
+}
@@ -0,0 +1,85 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.channels")
+public class ChatChannelProperties {
+  private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+  private boolean virtualThreads = false;
+  private Pool inbound = new Pool(CPUS * 2, CPUS * 8, 10000);
+  private Pool outbound = new Pool(CPUS * 2, CPUS * 8, 10000);
+  private Pool broker = new Pool(1, 1, 10000);
+
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  public void setVirtualThreads(boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+
+  public Pool getInbound() {
+    return inbound;
+  }
+
+  public void setInbound(Pool inbound) {
+    this.inbound = inbound;
+  }
+
+  public Pool getOutbound() {
+    return outbound;
+  }
+
+  public void setOutbound(Pool outbound) {
+    this.outbound = outbound;
+  }
+
+  public Pool getBroker() {
+    return broker;
+  }
+
+  public void setBroker(Pool broker) {
+    this.broker = broker;
+  }
+
+  public static class Pool {
+    private int corePoolSize;
+    private int maxPoolSize;
+    private int queueCapacity;
+
+    public Pool() {}
+
+    public Pool(int corePoolSize, int maxPoolSize, int queueCapacity) {
+      this.corePoolSize = corePoolSize;
+      this.maxPoolSize = maxPoolSize;
+      this.queueCapacity = queueCapacity;
+    }
+
+    public int getCorePoolSize() {
+      return corePoolSize;
+    }
+
+    public void setCorePoolSize(int corePoolSize) {
+      this.corePoolSize = corePoolSize;
+    }
+
+    public int getMaxPoolSize() {
+      return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+      this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+    }
+  }
+}
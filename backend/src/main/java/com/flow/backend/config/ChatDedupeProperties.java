@@ -0,0 +1,27 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.dedupe")
+public class ChatDedupeProperties {
+  private int cacheSize = 10000;
+  private int retentionHours = 24;
+
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  public void setCacheSize(int cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  public int getRetentionHours() {
+    return retentionHours;
+  }
+
+  public void setRetentionHours(int retentionHours) {
+    this.retentionHours = retentionHours;
+  }
+}
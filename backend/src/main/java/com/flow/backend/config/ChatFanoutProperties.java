@@ -0,0 +1,72 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.fanout")
+public class ChatFanoutProperties {
+  private String mode = "local";
+  private int queueCapacity = 10000;
+  private int batchSize = 100;
+  private long listenTimeoutMs = 500;
+  private long reconnectDelayMs = 2000;
+  private int spillRetentionSeconds = 60;
+  private long presenceSyncMs = 15000;
+
+  public String getMode() {
+    return mode;
+  }
+
+  public void setMode(String mode) {
+    this.mode = mode;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public long getListenTimeoutMs() {
+    return listenTimeoutMs;
+  }
+
+  public void setListenTimeoutMs(long listenTimeoutMs) {
+    this.listenTimeoutMs = listenTimeoutMs;
+  }
+
+  public long getReconnectDelayMs() {
+    return reconnectDelayMs;
+  }
+
+  public void setReconnectDelayMs(long reconnectDelayMs) {
+    this.reconnectDelayMs = reconnectDelayMs;
+  }
+
+  public int getSpillRetentionSeconds() {
+    return spillRetentionSeconds;
+  }
+
+  public void setSpillRetentionSeconds(int spillRetentionSeconds) {
+    this.spillRetentionSeconds = spillRetentionSeconds;
+  }
+
+  public long getPresenceSyncMs() {
+    return presenceSyncMs;
+  }
+
+  public void setPresenceSyncMs(long presenceSyncMs) {
+    this.presenceSyncMs = presenceSyncMs;
+  }
+}
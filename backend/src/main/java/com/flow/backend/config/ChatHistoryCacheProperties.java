@@ -0,0 +1,45 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.history-cache")
+public class ChatHistoryCacheProperties {
+  private boolean enabled = true;
+  private int messagesPerConversation = 100;
+  private int maxConversations = 10000;
+  private long idleTimeoutSeconds = 900;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getMessagesPerConversation() {
+    return messagesPerConversation;
+  }
+
+  public void setMessagesPerConversation(int messagesPerConversation) {
+    this.messagesPerConversation = messagesPerConversation;
+  }
+
+  public int getMaxConversations() {
+    return maxConversations;
+  }
+
+  public void setMaxConversations(int maxConversations) {
+    this.maxConversations = maxConversations;
+  }
+
+  public long getIdleTimeoutSeconds() {
+    return idleTimeoutSeconds;
+  }
+
+  public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+    this.idleTimeoutSeconds = idleTimeoutSeconds;
+  }
+}
@@ -0,0 +1,36 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.partitioning")
+public class ChatPartitionProperties {
+  private boolean enabled = false;
+  private int monthsAhead = 3;
+  private int retentionMonths = 0;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getMonthsAhead() {
+    return monthsAhead;
+  }
+
+  public void setMonthsAhead(int monthsAhead) {
+    this.monthsAhead = monthsAhead;
+  }
+
+  public int getRetentionMonths() {
+    return retentionMonths;
+  }
+
+  public void setRetentionMonths(int retentionMonths) {
+    this.retentionMonths = retentionMonths;
+  }
+}
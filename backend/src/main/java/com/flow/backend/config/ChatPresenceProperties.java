@@ -0,0 +1,27 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.presence")
+public class ChatPresenceProperties {
+  private long heartbeatMs = 10000;
+  private long sessionTimeoutMs = 30000;
+
+  public long getHeartbeatMs() {
+    return heartbeatMs;
+  }
+
+  public void setHeartbeatMs(long heartbeatMs) {
+    this.heartbeatMs = heartbeatMs;
+  }
+
+  public long getSessionTimeoutMs() {
+    return sessionTimeoutMs;
+  }
+
+  public void setSessionTimeoutMs(long sessionTimeoutMs) {
+    this.sessionTimeoutMs = sessionTimeoutMs;
+  }
+}
@@ -0,0 +1,36 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.purge")
+public class ChatPurgeProperties {
+  private int batchSize = 1000;
+  private int batchesPerRun = 10;
+  private long intervalMs = 1000;
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public int getBatchesPerRun() {
+    return batchesPerRun;
+  }
+
+  public void setBatchesPerRun(int batchesPerRun) {
+    this.batchesPerRun = batchesPerRun;
+  }
+
+  public long getIntervalMs() {
+    return intervalMs;
+  }
+
+  public void setIntervalMs(long intervalMs) {
+    this.intervalMs = intervalMs;
+  }
+}
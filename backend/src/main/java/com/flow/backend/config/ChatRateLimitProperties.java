@@ -0,0 +1,73 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.rate-limit")
+public class ChatRateLimitProperties {
+  private boolean enabled = true;
+  private Budget send = new Budget(20, 5);
+  private Budget typing = new Budget(10, 2);
+  private Budget search = new Budget(10, 1);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public Budget getSend() {
+    return send;
+  }
+
+  public void setSend(Budget send) {
+    this.send = send;
+  }
+
+  public Budget getTyping() {
+    return typing;
+  }
+
+  public void setTyping(Budget typing) {
+    this.typing = typing;
+  }
+
+  public Budget getSearch() {
+    return search;
+  }
+
+  public void setSearch(Budget search) {
+    this.search = search;
+  }
+
+  public static class Budget {
+    private int capacity;
+    private double refillPerSecond;
+
+    public Budget() {}
+
+    public Budget(int capacity, double refillPerSecond) {
+      this.capacity = capacity;
+      this.refillPerSecond = refillPerSecond;
+    }
+
+    public int getCapacity() {
+      return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+      this.capacity = capacity;
+    }
+
+    public double getRefillPerSecond() {
+      return refillPerSecond;
+    }
+
+    public void setRefillPerSecond(double refillPerSecond) {
+      this.refillPerSecond = refillPerSecond;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.flow.backend.config;
+
+import com.flow.backend.service.ChatPartitionMaintenance;
+import com.flow.backend.service.ConversationSummaryService;
+import com.flow.backend.service.MessageSearchService;
+import com.flow.backend.service.MessageSequencer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ChatSchemaInitializer implements CommandLineRunner {
+
+  @Autowired private ChatPartitionMaintenance chatPartitionMaintenance;
+
+  @Autowired private MessageSearchService messageSearchService;
+
+  @Autowired private ConversationSummaryService conversationSummaryService;
+
+  @Autowired private MessageSequencer messageSequencer;
+
+  @Override
+  public void run(String... args) throws Exception {
+    chatPartitionMaintenance.ensurePartitioned();
+    messageSearchService.detectFullText();
+    messageSequencer.backfill();
+    conversationSummaryService.backfill();
+  }
+}
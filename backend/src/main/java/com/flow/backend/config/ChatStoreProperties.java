@@ -0,0 +1,64 @@
+package com.flow.backend.config;
+
+import java.nio.file.Path;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.store")
+public class ChatStoreProperties {
+  private String engine = "jpa";
+  private final Mmap mmap = new Mmap();
+
+  public String getEngine() {
+    return engine;
+  }
+
+  public void setEngine(String engine) {
+    this.engine = engine;
+  }
+
+  public Mmap getMmap() {
+    return mmap;
+  }
+
+  public static class Mmap {
+    private String directory =
+        Path.of(System.getProperty("user.home"), ".flow", "messages").toString();
+    private int segmentBytes = 8 * 1024 * 1024;
+    private boolean forceWrites = false;
+    private long idleTimeoutSeconds = 900;
+
+    public String getDirectory() {
+      return directory;
+    }
+
+    public void setDirectory(String directory) {
+      this.directory = directory;
+    }
+
+    public int getSegmentBytes() {
+      return segmentBytes;
+    }
+
+    public void setSegmentBytes(int segmentBytes) {
+      this.segmentBytes = segmentBytes;
+    }
+
+    public boolean isForceWrites() {
+      return forceWrites;
+    }
+
+    public void setForceWrites(boolean forceWrites) {
+      this.forceWrites = forceWrites;
+    }
+
+    public long getIdleTimeoutSeconds() {
+      return idleTimeoutSeconds;
+    }
+
+    public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+      this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+  }
+}
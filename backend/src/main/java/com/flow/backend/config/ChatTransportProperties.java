@@ -0,0 +1,45 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.transport")
+public class ChatTransportProperties {
+  private int sendBufferSizeBytes = 512 * 1024;
+  private int sendTimeLimitMs = 10000;
+  private int messageSizeLimitBytes = 64 * 1024;
+  private int slowConsumerFrames = 64;
+
+  public int getSendBufferSizeBytes() {
+    return sendBufferSizeBytes;
+  }
+
+  public void setSendBufferSizeBytes(int sendBufferSizeBytes) {
+    this.sendBufferSizeBytes = sendBufferSizeBytes;
+  }
+
+  public int getSendTimeLimitMs() {
+    return sendTimeLimitMs;
+  }
+
+  public void setSendTimeLimitMs(int sendTimeLimitMs) {
+    this.sendTimeLimitMs = sendTimeLimitMs;
+  }
+
+  public int getMessageSizeLimitBytes() {
+    return messageSizeLimitBytes;
+  }
+
+  public void setMessageSizeLimitBytes(int messageSizeLimitBytes) {
+    this.messageSizeLimitBytes = messageSizeLimitBytes;
+  }
+
+  public int getSlowConsumerFrames() {
+    return slowConsumerFrames;
+  }
+
+  public void setSlowConsumerFrames(int slowConsumerFrames) {
+    this.slowConsumerFrames = slowConsumerFrames;
+  }
+}
@@ -0,0 +1,27 @@
+package com.flow.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "chat.typing")
+public class ChatTypingProperties {
+  private long timeoutMs = 5000;
+  private long tickMs = 250;
+
+  public long getTimeoutMs() {
+    return timeoutMs;
+  }
+
+  public void setTimeoutMs(long timeoutMs) {
+    this.timeoutMs = timeoutMs;
+  }
+
+  public long getTickMs() {
+    return tickMs;
+  }
+
+  public void setTickMs(long tickMs) {
+    this.tickMs = tickMs;
+  }
+}
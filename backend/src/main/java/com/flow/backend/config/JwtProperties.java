@@ -8,6 +8,7 @@ import org.springframework.stereotype.Component;
 public class JwtProperties {
   private String secret;
   private int expiration = 86400; // 24 hours in seconds
+  private int cacheSize = 10000;
 
   public String getSecret() {
     return secret;
@@ -24,4 +25,12 @@ public class JwtProperties {
   public void setExpiration(int expiration) {
     this.expiration = expiration;
   }
+
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  public void setCacheSize(int cacheSize) {
+    this.cacheSize = cacheSize;
+  }
 }
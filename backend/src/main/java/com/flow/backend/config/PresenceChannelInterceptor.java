@@ -0,0 +1,24 @@
+package com.flow.backend.config;
+
+import com.flow.backend.service.PresenceRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+@Component
+public class PresenceChannelInterceptor implements ChannelInterceptor {
+
+  // Lazy: the registry publishes through the broker this interceptor is part of.
+  @Autowired @Lazy private PresenceRegistry presenceRegistry;
+
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    if (sessionId != null) presenceRegistry.touch(sessionId);
+    return message;
+  }
+}
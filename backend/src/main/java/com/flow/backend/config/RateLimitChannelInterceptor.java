@@ -0,0 +1,45 @@
+package com.flow.backend.config;
+
+import com.flow.backend.service.RateLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+// Runs on the client's own inbound thread, before the message is queued for a handler, so a
+// runaway client is turned away without costing the database anything.
+@Component
+public class RateLimitChannelInterceptor implements ChannelInterceptor {
+
+  private static final String CHAT_PREFIX = "/app/chats/";
+
+  @Autowired private RateLimiter rateLimiter;
+
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    StompHeaderAccessor accessor =
+        MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+    if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())) return message;
+    String destination = accessor.getDestination();
+    if (destination == null || !destination.startsWith(CHAT_PREFIX)) return message;
+    if (!(accessor.getUser() instanceof StompPrincipal principal)) return message;
+
+    if (destination.endsWith("/send")
+        && !rateLimiter.tryAcquire(principal.getUserId(), RateLimiter.Budget.SEND)) {
+      // Surfaces to the client as an ERROR frame.
+      throw new MessageDeliveryException(message, "Rate limit exceeded");
+    }
+    // Typing frames are superseded by the next one, so excess ones are dropped quietly rather
+    // than failing the session.
+    if (destination.endsWith("/typing")
+        && !rateLimiter.tryAcquire(principal.getUserId(), RateLimiter.Budget.TYPING)) {
+      return null;
+    }
+    return message;
+  }
+}
@@ -1,6 +1,7 @@
 package com.flow.backend.config;
 
 import com.flow.backend.filter.JwtAuthenticationFilter;
+import com.flow.backend.service.RoleService;
 import com.flow.backend.service.UserService;
 import com.flow.backend.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,11 +9,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -29,6 +35,8 @@ public class SecurityConfig {
 
   @Autowired private UserService userService;
 
+  @Autowired private RoleService roleService;
+
   @Autowired private JwtUtil jwtUtil;
 
   @Autowired private CorsConfigurationSource corsConfigurationSource;
@@ -53,6 +61,10 @@ public class SecurityConfig {
                     .permitAll()
                     .requestMatchers(HttpMethod.OPTIONS, "/**")
                     .permitAll()
+                    .requestMatchers("/actuator/health", "/actuator/health/**")
+                    .authenticated()
+                    .requestMatchers("/actuator/**")
+                    .access(adminOnly())
                     .anyRequest()
                     .authenticated())
         .oauth2Login(
@@ -63,21 +75,45 @@ public class SecurityConfig {
                     .failureHandler(customAuthenticationFailureHandler()))
         .exceptionHandling(
             exceptions ->
-                exceptions.authenticationEntryPoint(
-                    (request, response, authException) -> {
-                      if (request.getRequestURI().startsWith("/api/")) {
-                        response.setStatus(401);
-                        response.setContentType("application/json");
-                        response.getWriter().write("{\"error\":\"Unauthorized\"}");
-                      } else {
-                        response.sendRedirect("/login");
-                      }
-                    }))
+                exceptions
+                    .authenticationEntryPoint(
+                        (request, response, authException) -> {
+                          if (request.getRequestURI().startsWith("/api/")
+                              || request.getRequestURI().startsWith("/actuator/")) {
+                            response.setStatus(401);
+                            response.setContentType("application/json");
+                            response.getWriter().write("{\"error\":\"Unauthorized\"}");
+                          } else {
+                            response.sendRedirect("/login");
+                          }
+                        })
+                    .accessDeniedHandler(
+                        (request, response, accessDeniedException) -> {
+                          response.setStatus(403);
+                          response.setContentType("application/json");
+                          response.getWriter().write("{\"error\":\"Forbidden\"}");
+                        }))
         .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
 
     return http.build();
   }
 
+  // Metrics expose traffic and per-conversation timings, so they are for administrators only.
+  private AuthorizationManager<RequestAuthorizationContext> adminOnly() {
+    return (authentication, context) -> {
+      Authentication auth = authentication.get();
+      boolean admin =
+          auth != null
+              && auth.isAuthenticated()
+              && !(auth instanceof AnonymousAuthenticationToken)
+              && userService
+                  .findByEmail(auth.getName())
+                  .map(user -> roleService.getUserRoles(user).contains("ADMIN"))
+                  .orElse(false);
+      return new AuthorizationDecision(admin);
+    };
+  }
+
   @Bean
   public AuthenticationSuccessHandler customAuthenticationSuccessHandler() {
     return (request, response, authentication) -> {
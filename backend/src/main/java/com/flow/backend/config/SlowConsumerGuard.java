@@ -0,0 +1,145 @@
+package com.flow.backend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+// Tracks frames queued for each session between the outbound channel and the socket. Sessions
+// that fall behind lose typing and presence frames first; once Spring's send buffer or send time
+// limit is exceeded the session is closed with 4500, and clients reconnect and resume from their
+// last seq.
+@Component
+public class SlowConsumerGuard implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+  private static final CloseStatus SLOW_CONSUMER =
+      CloseStatus.SESSION_NOT_RELIABLE.withReason("Slow consumer, reconnect and resume");
+
+  @Autowired private ChatTransportProperties properties;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final Map<String, AtomicInteger> queued = new ConcurrentHashMap<>();
+
+  private DistributionSummary depth;
+  private Counter dropped;
+  private Counter terminated;
+
+  @PostConstruct
+  public void init() {
+    depth =
+        DistributionSummary.builder("chat.ws.outbound.depth")
+            .description("Frames already queued for a session when another is added")
+            .register(meterRegistry);
+    dropped = meterRegistry.counter("chat.ws.frames.dropped");
+    terminated = meterRegistry.counter("chat.ws.sessions.terminated");
+    meterRegistry.gauge("chat.ws.outbound.depth.max", queued, SlowConsumerGuard::maxDepth);
+    meterRegistry.gauge("chat.ws.sessions.slow", this, SlowConsumerGuard::slowSessions);
+  }
+
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    AtomicInteger count = sessionId == null ? null : queued.get(sessionId);
+    if (count == null) return message;
+
+    int pending = count.get();
+    if (pending >= properties.getSlowConsumerFrames() && isDroppable(message)) {
+      dropped.increment();
+      return null;
+    }
+    depth.record(pending);
+    count.incrementAndGet();
+    return message;
+  }
+
+  @Override
+  public WebSocketHandler decorate(WebSocketHandler handler) {
+    return new WebSocketHandlerDecorator(handler) {
+      @Override
+      public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        queued.put(session.getId(), count);
+        super.afterConnectionEstablished(new CountingSession(session, count));
+      }
+
+      @Override
+      public void afterConnectionClosed(WebSocketSession session, CloseStatus status)
+          throws Exception {
+        queued.remove(session.getId());
+        super.afterConnectionClosed(session, status);
+      }
+    };
+  }
+
+  // Typing and presence are superseded by the next event, so a lagging client loses nothing it
+  // cannot recover.
+  private static boolean isDroppable(Message<?> message) {
+    if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+      return false;
+    }
+    String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+    if (destination == null) return false;
+    return (destination.startsWith("/topic/chats/") && destination.endsWith("/typing"))
+        || destination.startsWith("/queue/presence");
+  }
+
+  private static double maxDepth(Map<String, AtomicInteger> queued) {
+    int max = 0;
+    for (AtomicInteger count : queued.values()) max = Math.max(max, count.get());
+    return max;
+  }
+
+  private double slowSessions() {
+    int threshold = properties.getSlowConsumerFrames();
+    return queued.values().stream().filter(c -> c.get() >= threshold).count();
+  }
+
+  // Sits beneath Spring's concurrent send decorator, so sendMessage returns once a frame has
+  // actually been written.
+  private class CountingSession extends WebSocketSessionDecorator {
+    private final AtomicInteger count;
+
+    private CountingSession(WebSocketSession delegate, AtomicInteger count) {
+      super(delegate);
+      this.count = count;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+      try {
+        super.sendMessage(message);
+      } finally {
+        // Frames such as CONNECT errors are written directly, without passing the channel.
+        count.getAndUpdate(c -> Math.max(0, c - 1));
+      }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+      if (CloseStatus.SESSION_NOT_RELIABLE.equalsCode(status)) {
+        terminated.increment();
+        status = SLOW_CONSUMER;
+      }
+      super.close(status);
+    }
+  }
+}
@@ -1,15 +1,16 @@
 package com.flow.backend.config;
 
+import com.flow.backend.dto.UserSnapshot;
 import java.security.Principal;
 import java.util.UUID;
 
 public class StompPrincipal implements Principal {
   private final String name;
-  private final UUID userId;
+  private final UserSnapshot user;
 
-  public StompPrincipal(String name, UUID userId) {
+  public StompPrincipal(String name, UserSnapshot user) {
     this.name = name;
-    this.userId = userId;
+    this.user = user;
   }
 
   @Override
@@ -18,6 +19,10 @@ public class StompPrincipal implements Principal {
   }
 
   public UUID getUserId() {
-    return userId;
+    return user.getId();
+  }
+
+  public UserSnapshot getUser() {
+    return user;
   }
 }
@@ -1,18 +1,28 @@
 package com.flow.backend.config;
 
+import java.util.concurrent.Callable;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebConfig {
 
+  // Request attribute through which a handler returning an async body (StreamingResponseBody and
+  // the like) overrides spring.mvc.async.request-timeout for that one request, in milliseconds.
+  public static final String ASYNC_TIMEOUT_ATTRIBUTE = WebConfig.class.getName() + ".asyncTimeout";
+
   @Value("${FRONTEND_URL}")
   private String frontendUrl;
 
@@ -28,6 +38,22 @@ public class WebConfig {
             .allowedHeaders("*")
             .allowCredentials(true);
       }
+
+      @Override
+      public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(
+            new CallableProcessingInterceptor() {
+              // Runs before the async context is started, which is when the timeout is applied.
+              @Override
+              public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request.getAttribute(ASYNC_TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+                        instanceof Long timeout
+                    && request instanceof AsyncWebRequest asyncRequest) {
+                  asyncRequest.setTimeout(timeout);
+                }
+              }
+            });
+      }
     };
   }
 
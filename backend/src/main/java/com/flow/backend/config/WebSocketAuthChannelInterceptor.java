@@ -1,13 +1,21 @@
 package com.flow.backend.config;
 
 import com.flow.backend.model.User;
+import com.flow.backend.service.ConversationMembershipCache;
+import com.flow.backend.service.ConversationSubscriptions;
 import com.flow.backend.service.UserService;
 import com.flow.backend.util.JwtUtil;
+import com.flow.backend.util.UserDisplayUtil;
+import io.jsonwebtoken.Claims;
 import java.security.Principal;
 import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
@@ -17,10 +25,21 @@ import org.springframework.stereotype.Component;
 @Component
 public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
 
+  private static final Pattern CHAT_TOPIC =
+      Pattern.compile("/topic/chats/([0-9a-fA-F-]{36})(/typing)?");
+
+  private static final String USER_QUEUE_PREFIX = "/user/queue/";
+
   @Autowired private JwtUtil jwtUtil;
 
   @Autowired private UserService userService;
 
+  @Autowired private UserDisplayUtil userDisplayUtil;
+
+  @Autowired private ConversationMembershipCache conversationMembershipCache;
+
+  @Autowired private ConversationSubscriptions conversationSubscriptions;
+
   @Override
   public Message<?> preSend(Message<?> message, MessageChannel channel) {
     StompHeaderAccessor accessor =
@@ -35,16 +54,70 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
         if (header != null && header.startsWith("Bearer ")) token = header.substring(7);
       }
 
-      if (token != null && jwtUtil.validateToken(token)) {
-        String email = jwtUtil.extractUsername(token);
-        User user = userService.findByEmail(email).orElse(null);
+      Claims claims = token == null ? null : jwtUtil.verify(token).orElse(null);
+      if (claims != null) {
+        User user = userService.findByEmail(claims.getSubject()).orElse(null);
         if (user != null) {
-          Principal p = new StompPrincipal(user.getEmail(), user.getId());
+          // The snapshot lives for the whole session; profile edits show up after a reconnect.
+          Principal p = new StompPrincipal(user.getEmail(), userDisplayUtil.snapshot(user));
           accessor.setUser(p);
         }
       }
     }
 
+    if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+      authorizeSubscribe(accessor);
+    }
+
+    if (StompCommand.UNSUBSCRIBE.equals(accessor.getCommand())
+        && accessor.getSessionId() != null
+        && accessor.getSubscriptionId() != null) {
+      conversationSubscriptions.remove(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
     return message;
   }
+
+  // Deny by default: a session may subscribe to its own /user/queue/... destinations and to the
+  // topics of conversations it takes part in, nothing else. The simple broker treats *, ? and {}
+  // in a subscription as a pattern, so they are refused outright rather than checked. Conversation
+  // membership is looked up in the in-memory index, so subscribing costs no query once it is warm.
+  private void authorizeSubscribe(StompHeaderAccessor accessor) {
+    String destination = accessor.getDestination();
+    if (destination == null
+        || destination.indexOf('*') >= 0
+        || destination.indexOf('?') >= 0
+        || destination.indexOf('{') >= 0) {
+      throw new MessageDeliveryException("Invalid destination " + destination);
+    }
+    if (!(accessor.getUser() instanceof StompPrincipal principal)) {
+      throw new MessageDeliveryException("Not allowed to subscribe to " + destination);
+    }
+    if (destination.startsWith(USER_QUEUE_PREFIX)
+        && destination.length() > USER_QUEUE_PREFIX.length()) {
+      return;
+    }
+    Matcher topic = CHAT_TOPIC.matcher(destination);
+    if (!topic.matches()) {
+      throw new MessageDeliveryException("Not allowed to subscribe to " + destination);
+    }
+    UUID friendshipId;
+    try {
+      friendshipId = UUID.fromString(topic.group(1));
+    } catch (IllegalArgumentException e) {
+      throw new MessageDeliveryException("Unknown destination " + destination);
+    }
+    UUID userId = principal.getUserId();
+    if (!conversationMembershipCache.isParticipant(friendshipId, userId)) {
+      throw new MessageDeliveryException("Not allowed to subscribe to " + destination);
+    }
+    // Tracked so that ending the friendship can unsubscribe it. A removal that raced with this
+    // subscribe may have swept before it was tracked, so membership is checked once more.
+    conversationSubscriptions.add(
+        accessor.getSessionId(), accessor.getSubscriptionId(), friendshipId);
+    if (!conversationMembershipCache.isParticipant(friendshipId, userId)) {
+      conversationSubscriptions.remove(accessor.getSessionId(), accessor.getSubscriptionId());
+      throw new MessageDeliveryException("Not allowed to subscribe to " + destination);
+    }
+  }
 }
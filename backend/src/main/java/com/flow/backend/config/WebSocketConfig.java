@@ -2,12 +2,15 @@ package com.flow.backend.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -15,19 +18,67 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
   @Autowired private ChannelInterceptor webSocketAuthChannelInterceptor;
 
+  @Autowired private PresenceChannelInterceptor presenceChannelInterceptor;
+
+  @Autowired private RateLimitChannelInterceptor rateLimitChannelInterceptor;
+
+  @Autowired private ChatPresenceProperties presenceProperties;
+
+  @Autowired private ChatTransportProperties transportProperties;
+
+  @Autowired private SlowConsumerGuard slowConsumerGuard;
+
+  @Autowired private WebSocketSessions webSocketSessions;
+
+  @Autowired private ChatChannelExecutors channelExecutors;
+
+  @Autowired @Lazy private TaskScheduler messageBrokerTaskScheduler;
+
+  // Heartbeats let PresenceRegistry tell idle clients from dead ones; /queue carries per-user
+  // destinations such as /user/queue/presence.
   @Override
   public void configureMessageBroker(MessageBrokerRegistry config) {
-    config.enableSimpleBroker("/topic");
+    long heartbeat = presenceProperties.getHeartbeatMs();
+    config
+        .enableSimpleBroker("/topic", "/queue")
+        .setHeartbeatValue(new long[] {heartbeat, heartbeat})
+        .setTaskScheduler(messageBrokerTaskScheduler);
     config.setApplicationDestinationPrefixes("/app");
+    config.configureBrokerChannel().executor(channelExecutors.getBroker());
+    // The outbound channel is a pool; keep frames for each session in the order they were sent.
+    config.setPreservePublishOrder(true);
   }
 
   @Override
   public void registerStompEndpoints(StompEndpointRegistry registry) {
     registry.addEndpoint("/ws").setAllowedOriginPatterns("*").withSockJS();
+    // The inbound channel is a pool too; handle each session's frames in the order they arrived,
+    // so one client's sends are stored and broadcast in the order it sent them.
+    registry.setPreserveReceiveOrder(true);
   }
 
   @Override
   public void configureClientInboundChannel(ChannelRegistration registration) {
-    registration.interceptors(webSocketAuthChannelInterceptor);
+    registration
+        .executor(channelExecutors.getInbound())
+        .interceptors(
+            webSocketAuthChannelInterceptor,
+            presenceChannelInterceptor,
+            rateLimitChannelInterceptor);
+  }
+
+  @Override
+  public void configureClientOutboundChannel(ChannelRegistration registration) {
+    registration.executor(channelExecutors.getOutbound()).interceptors(slowConsumerGuard);
+  }
+
+  @Override
+  public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+    registration
+        .setSendBufferSizeLimit(transportProperties.getSendBufferSizeBytes())
+        .setSendTimeLimit(transportProperties.getSendTimeLimitMs())
+        .setMessageSizeLimit(transportProperties.getMessageSizeLimitBytes())
+        .addDecoratorFactory(slowConsumerGuard)
+        .addDecoratorFactory(webSocketSessions);
   }
 }
@@ -0,0 +1,51 @@
+package com.flow.backend.config;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+// The open WebSocket sessions of this node by id, which is also the STOMP session id, so services
+// that only see STOMP frames can close the underlying connection.
+@Component
+public class WebSocketSessions implements WebSocketHandlerDecoratorFactory {
+
+  private static final Logger log = LoggerFactory.getLogger(WebSocketSessions.class);
+
+  private final Map<String, WebSocketSession> open = new ConcurrentHashMap<>();
+
+  @Override
+  public WebSocketHandler decorate(WebSocketHandler handler) {
+    return new WebSocketHandlerDecorator(handler) {
+      @Override
+      public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        open.put(session.getId(), session);
+        super.afterConnectionEstablished(session);
+      }
+
+      @Override
+      public void afterConnectionClosed(WebSocketSession session, CloseStatus status)
+          throws Exception {
+        open.remove(session.getId());
+        super.afterConnectionClosed(session, status);
+      }
+    };
+  }
+
+  public void close(String sessionId, CloseStatus status) {
+    WebSocketSession session = open.get(sessionId);
+    if (session == null) return;
+    try {
+      session.close(status);
+    } catch (IOException e) {
+      log.debug("Failed to close WebSocket session {}: {}", sessionId, e.getMessage());
+    }
+  }
+}
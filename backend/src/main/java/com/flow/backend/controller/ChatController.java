@@ -1,20 +1,32 @@
 package com.flow.backend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flow.backend.config.ChatExportProperties;
+import com.flow.backend.config.WebConfig;
+import com.flow.backend.dto.MessageCursor;
 import com.flow.backend.model.User;
+import com.flow.backend.service.ChatBroadcaster;
 import com.flow.backend.service.ChatService;
+import com.flow.backend.service.RateLimiter;
 import com.flow.backend.service.UserService;
 import com.flow.backend.util.AuthUtil;
 import com.flow.backend.util.UserDisplayUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.MessagingException;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -22,6 +34,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @CrossOrigin(origins = "${FRONTEND_URL}", allowCredentials = "true")
@@ -36,10 +49,16 @@ public class ChatController {
 
   @Autowired private UserDisplayUtil userDisplayUtil;
 
+  @Autowired private ObjectMapper objectMapper;
+
   @Autowired private com.flow.backend.service.FriendService friendService;
   @Autowired private com.flow.backend.repository.FriendshipRepository friendshipRepository;
   @Autowired private com.flow.backend.service.VercelBlobService vercelBlobService;
-  @Autowired private org.springframework.messaging.simp.SimpMessagingTemplate messagingTemplate;
+  @Autowired private ChatBroadcaster chatBroadcaster;
+
+  @Autowired private RateLimiter rateLimiter;
+
+  @Autowired private ChatExportProperties chatExportProperties;
 
   @PostMapping("/{friendshipId}/upload")
   public ResponseEntity<?> uploadAndSendMessage(
@@ -59,15 +78,15 @@ public class ChatController {
       var dto =
           chatService.saveMessageWithAttachment(
               friendshipId,
-              me,
+              userDisplayUtil.snapshot(me),
               content == null ? "" : content,
               uploadedUrl,
               attachmentType,
               attachmentName);
 
       try {
-        messagingTemplate.convertAndSend("/topic/chats/" + friendshipId.toString(), dto);
-      } catch (MessagingException e) {
+        chatBroadcaster.broadcast(dto);
+      } catch (MessagingException | IllegalStateException e) {
         System.err.println("Failed to broadcast uploaded message: " + e.getMessage());
       }
 
@@ -111,6 +130,53 @@ public class ChatController {
     }
   }
 
+  @GetMapping
+  public ResponseEntity<?> getInbox(
+      @RequestHeader(value = "Authorization", required = false) String authHeader) {
+    try {
+      User me = getCurrentUserFromToken(authHeader);
+      if (me == null) return ResponseEntity.status(401).body("Not authenticated");
+      return ResponseEntity.ok(chatService.getInbox(me));
+    } catch (Exception e) {
+      return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+    }
+  }
+
+  @PostMapping("/{friendshipId}/read")
+  public ResponseEntity<?> markRead(
+      @RequestHeader(value = "Authorization", required = false) String authHeader,
+      @PathVariable("friendshipId") UUID friendshipId,
+      @RequestParam(value = "upTo", required = false) String upTo) {
+    try {
+      User me = getCurrentUserFromToken(authHeader);
+      if (me == null) return ResponseEntity.status(401).body("Not authenticated");
+      chatService.markRead(friendshipId, me, MessageCursor.parse(upTo));
+      return ResponseEntity.ok(Map.of("message", "Marked as read"));
+    } catch (IllegalArgumentException ia) {
+      return ResponseEntity.badRequest().body(Map.of("error", ia.getMessage()));
+    } catch (Exception e) {
+      return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+    }
+  }
+
+  // Body: the highest seq the client holds per conversation, {"<friendshipId>": seq, ...}.
+  @PostMapping("/sync")
+  public ResponseEntity<?> sync(
+      @RequestHeader(value = "Authorization", required = false) String authHeader,
+      @RequestBody(required = false) Map<UUID, Long> watermarks,
+      @RequestParam(value = "limit", required = false, defaultValue = "200") int limit) {
+    try {
+      User me = getCurrentUserFromToken(authHeader);
+      if (me == null) return ResponseEntity.status(401).body("Not authenticated");
+      var page = chatService.sync(me, watermarks, limit);
+      return ResponseEntity.ok(page);
+    } catch (IllegalArgumentException ia) {
+      return ResponseEntity.badRequest().body(Map.of("error", ia.getMessage()));
+    } catch (Exception e) {
+      return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+    }
+  }
+
   @GetMapping("/{friendshipId}/messages")
   public ResponseEntity<?> getMessages(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
@@ -128,6 +194,88 @@ public class ChatController {
     }
   }
 
+  @GetMapping("/{friendshipId}/history")
+  public ResponseEntity<?> getHistory(
+      @RequestHeader(value = "Authorization", required = false) String authHeader,
+      @PathVariable("friendshipId") UUID friendshipId,
+      @RequestParam(value = "before", required = false) String before,
+      @RequestParam(value = "limit", required = false, defaultValue = "50") int limit) {
+    try {
+      User me = getCurrentUserFromToken(authHeader);
+      if (me == null) return ResponseEntity.status(401).body("Not authenticated");
+      chatService.requireParticipant(friendshipId, me);
+      var page = chatService.getMessagesBefore(friendshipId, MessageCursor.parse(before), limit);
+      return ResponseEntity.ok(page);
+    } catch (IllegalArgumentException ia) {
+      return ResponseEntity.badRequest().body(Map.of("error", ia.getMessage()));
+    } catch (Exception e) {
+      return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+    }
+  }
+
+  @GetMapping("/{friendshipId}/messages/range")
+  public ResponseEntity<?> getMessageRange(
+      @RequestHeader(value = "Authorization", required = false) String authHeader,
+      @PathVariable("friendshipId") UUID friendshipId,
+      @RequestParam("fromSeq") long fromSeq,
+      @RequestParam("toSeq") long toSeq) {
+    try {
+      User me = getCurrentUserFromToken(authHeader);
+      if (me == null) return ResponseEntity.status(401).body("Not authenticated");
+      return ResponseEntity.ok(chatService.getMessagesBySeq(friendshipId, me, fromSeq, toSeq));
+    } catch (IllegalArgumentException ia) {
+      return ResponseEntity.badRequest().body(Map.of("error", ia.getMessage()));
+    } catch (Exception e) {
+      return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+    }
+  }
+
+  // StreamingResponseBody is only streamed when it is the declared body type, so error responses
+  // are written through it as well.
+  @GetMapping("/{friendshipId}/export")
+  public ResponseEntity<StreamingResponseBody> exportMessages(
+      @RequestHeader(value = "Authorization", required = false) String authHeader,
+      @PathVariable("friendshipId") UUID friendshipId,
+      @RequestParam(value = "gzip", required = false, defaultValue = "false") boolean gzip,
+      HttpServletRequest request) {
+    try {
+      User me = getCurrentUserFromToken(authHeader);
+      if (me == null) return streamError(401, "Not authenticated");
+      chatService.requireParticipant(friendshipId, me);
+      // The export streams for as long as the conversation takes to read.
+      request.setAttribute(WebConfig.ASYNC_TIMEOUT_ATTRIBUTE, chatExportProperties.getTimeoutMs());
+
+      String filename = "chat-" + friendshipId + (gzip ? ".ndjson.gz" : ".ndjson");
+      StreamingResponseBody body =
+          out -> {
+            if (gzip) {
+              try (GZIPOutputStream zipped = new GZIPOutputStream(out, 64 * 1024)) {
+                chatService.exportMessages(friendshipId, zipped);
+              }
+            } else {
+              chatService.exportMessages(friendshipId, out);
+            }
+          };
+      return ResponseEntity.ok()
+          .contentType(
+              gzip ? MediaType.parseMediaType("application/gzip") : MediaType.APPLICATION_NDJSON)
+          .header(
+              HttpHeaders.CONTENT_DISPOSITION,
+              ContentDisposition.attachment().filename(filename).build().toString())
+          .body(body);
+    } catch (IllegalArgumentException ia) {
+      return streamError(400, ia.getMessage());
+    } catch (Exception e) {
+      return streamError(500, e.getMessage());
+    }
+  }
+
+  private ResponseEntity<StreamingResponseBody> streamError(int status, String error) {
+    return ResponseEntity.status(status)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(out -> objectMapper.writeValue(out, Map.of("error", error)));
+  }
+
   @GetMapping("/{friendshipId}/participant")
   public ResponseEntity<?> getParticipant(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
@@ -159,13 +307,17 @@ public class ChatController {
       @RequestParam(value = "limit", required = false, defaultValue = "50") int limit,
       @RequestParam(value = "windowBefore", required = false, defaultValue = "5") int windowBefore,
       @RequestParam(value = "windowAfter", required = false, defaultValue = "5") int windowAfter,
-      @RequestParam(value = "fetchLimit", required = false, defaultValue = "200") int fetchLimit) {
+      @RequestParam(value = "ranked", required = false, defaultValue = "false") boolean ranked,
+      @RequestParam(value = "highlight", required = false, defaultValue = "false")
+          boolean highlight) {
     try {
       User me = getCurrentUserFromToken(authHeader);
       if (me == null) return ResponseEntity.status(401).body("Not authenticated");
+      if (!rateLimiter.tryAcquire(me.getId(), RateLimiter.Budget.SEARCH))
+        return ResponseEntity.status(429).body(Map.of("error", "Rate limit exceeded"));
       var results =
           chatService.searchMessagesWithContext(
-              friendshipId, q, limit, windowBefore, windowAfter, fetchLimit);
+              friendshipId, q, limit, windowBefore, windowAfter, ranked, highlight);
       return ResponseEntity.ok(results);
     } catch (IllegalArgumentException ia) {
       return ResponseEntity.badRequest().body(Map.of("error", ia.getMessage()));
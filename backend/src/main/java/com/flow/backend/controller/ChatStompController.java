@@ -1,16 +1,24 @@
 package com.flow.backend.controller;
 
+import com.flow.backend.config.StompPrincipal;
 import com.flow.backend.dto.ChatMessageDTO;
-import com.flow.backend.model.User;
+import com.flow.backend.dto.UserSnapshot;
+import com.flow.backend.service.ChatBroadcaster;
 import com.flow.backend.service.ChatService;
+import com.flow.backend.service.TypingTracker;
 import com.flow.backend.service.UserService;
 import com.flow.backend.util.UserDisplayUtil;
 import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
@@ -18,7 +26,9 @@ import org.springframework.stereotype.Controller;
 @Controller
 public class ChatStompController {
 
-  @Autowired private SimpMessagingTemplate messagingTemplate;
+  private static final Logger log = LoggerFactory.getLogger(ChatStompController.class);
+
+  @Autowired private ChatBroadcaster chatBroadcaster;
 
   @Autowired private ChatService chatService;
 
@@ -26,27 +36,53 @@ public class ChatStompController {
 
   @Autowired private UserDisplayUtil userDisplayUtil;
 
-  @MessageMapping("/chats/{friendshipId}/send")
-  public void sendMessage(
-      @DestinationVariable("friendshipId") UUID friendshipId, String payload, Principal principal) {
-    if (principal == null) return;
-
-    UUID senderId = null;
-    if (principal instanceof com.flow.backend.config.StompPrincipal sp) {
-      senderId = sp.getUserId();
-    } else {
-      User u = userService.findByEmail(principal.getName()).orElse(null);
-      if (u != null) senderId = u.getId();
-    }
+  @Autowired private TypingTracker typingTracker;
 
-    if (senderId == null) return;
+  @Autowired private SimpMessagingTemplate messagingTemplate;
 
-    User sender = userService.findById(senderId).orElse(null);
+  @MessageMapping("/chats/{friendshipId}/send")
+  public void sendMessage(
+      @DestinationVariable("friendshipId") UUID friendshipId,
+      String payload,
+      @Header(name = "client-message-id", required = false) String clientMessageId,
+      Principal principal) {
+    UserSnapshot sender = sender(principal);
     if (sender == null) return;
 
-    ChatMessageDTO saved = chatService.saveMessage(friendshipId, sender, payload);
+    UUID messageId;
+    try {
+      messageId = parseClientMessageId(clientMessageId);
+    } catch (IllegalArgumentException e) {
+      rejected(principal, friendshipId, clientMessageId, e);
+      return;
+    }
 
-    messagingTemplate.convertAndSend("/topic/chats/" + friendshipId.toString(), saved);
+    // A sent message ends the sender's typing indicator without waiting for the timeout.
+    typingTracker.stop(friendshipId, sender);
+    chatService
+        .saveMessageAsync(friendshipId, sender, payload, messageId)
+        .whenComplete(
+            (sent, ex) -> {
+              if (ex != null) {
+                if (isClientError(ex)) {
+                  log.debug(
+                      "Rejected message for conversation {}: {}",
+                      friendshipId,
+                      cause(ex).getMessage());
+                } else {
+                  log.error("Failed to persist message for conversation {}", friendshipId, ex);
+                }
+                rejected(principal, friendshipId, clientMessageId, ex);
+                return;
+              }
+              if (sent.duplicate()) {
+                // The conversation has the original already; only the retrying sender is still
+                // waiting for it.
+                acknowledged(principal, sent.message());
+                return;
+              }
+              chatBroadcaster.broadcast(sent.message());
+            });
   }
 
   @MessageMapping("/chats/{friendshipId}/typing")
@@ -54,28 +90,66 @@ public class ChatStompController {
       @DestinationVariable("friendshipId") UUID friendshipId,
       String isTyping,
       Principal principal) {
-    if (principal == null) return;
-
-    UUID senderId = null;
-    if (principal instanceof com.flow.backend.config.StompPrincipal sp) {
-      senderId = sp.getUserId();
-    } else {
-      User u = userService.findByEmail(principal.getName()).orElse(null);
-      if (u != null) senderId = u.getId();
+    UserSnapshot sender = sender(principal);
+    if (sender == null) return;
+
+    try {
+      typingTracker.update(friendshipId, sender, Boolean.parseBoolean(isTyping));
+    } catch (IllegalArgumentException e) {
+      log.debug("Ignoring typing frame for conversation {}: {}", friendshipId, e.getMessage());
     }
+  }
 
-    if (senderId == null) return;
+  // The retried send's answer goes to /user/queue/acks, carrying the original message and the
+  // client-message-id the sender is matching on.
+  private void acknowledged(Principal principal, ChatMessageDTO message) {
+    try {
+      messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/acks", message);
+    } catch (MessagingException e) {
+      log.debug(
+          "Could not acknowledge a retried send to {}: {}", principal.getName(), e.getMessage());
+    }
+  }
 
-    User sender = userService.findById(senderId).orElse(null);
-    if (sender == null) return;
+  // The send had no reply of its own, so the sender learns of the failure on /user/queue/errors and
+  // can retry with the same client-message-id.
+  private void rejected(
+      Principal principal, UUID friendshipId, String clientMessageId, Throwable ex) {
+    Map<String, Object> error = new HashMap<>();
+    error.put("friendshipId", friendshipId);
+    error.put("clientMessageId", clientMessageId);
+    error.put("error", isClientError(ex) ? cause(ex).getMessage() : "Message could not be saved");
+    try {
+      messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/errors", error);
+    } catch (MessagingException e) {
+      log.debug("Could not notify {} of a failed send: {}", principal.getName(), e.getMessage());
+    }
+  }
 
-    Map<String, Object> typingEvent = new HashMap<>();
-    typingEvent.put("type", "typing");
-    typingEvent.put("userId", senderId.toString());
-    typingEvent.put("userName", userDisplayUtil.getDisplayName(sender));
-    typingEvent.put("isTyping", Boolean.valueOf(isTyping));
+  private static Throwable cause(Throwable ex) {
+    return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+  }
+
+  // Validation and access failures the sender can act on, as opposed to storage errors.
+  private static boolean isClientError(Throwable ex) {
+    Throwable cause = cause(ex);
+    return cause instanceof IllegalStateException || cause instanceof IllegalArgumentException;
+  }
+
+  private static UUID parseClientMessageId(String value) {
+    if (value == null || value.isBlank()) return null;
+    try {
+      return UUID.fromString(value);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid client-message-id");
+    }
+  }
 
-    messagingTemplate.convertAndSend(
-        "/topic/chats/" + friendshipId.toString() + "/typing", typingEvent);
+  // Sessions authenticated by WebSocketAuthChannelInterceptor carry the sender snapshot taken at
+  // CONNECT; anything else falls back to a lookup.
+  private UserSnapshot sender(Principal principal) {
+    if (principal == null) return null;
+    if (principal instanceof StompPrincipal sp) return sp.getUser();
+    return userService.findByEmail(principal.getName()).map(userDisplayUtil::snapshot).orElse(null);
   }
 }
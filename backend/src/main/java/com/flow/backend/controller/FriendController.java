@@ -3,9 +3,12 @@ package com.flow.backend.controller;
 import com.flow.backend.dto.FriendRequestDTO;
 import com.flow.backend.model.User;
 import com.flow.backend.service.FriendService;
+import com.flow.backend.service.PresenceRegistry;
 import com.flow.backend.service.UserService;
 import com.flow.backend.util.AuthUtil;
 import com.flow.backend.util.UserDisplayUtil;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -31,6 +34,8 @@ public class FriendController {
 
   @Autowired private UserDisplayUtil userDisplayUtil;
 
+  @Autowired private PresenceRegistry presenceRegistry;
+
   private User getCurrentUserFromToken(String authHeader) {
     try {
       String email = authUtil.extractEmailFromToken(authHeader);
@@ -73,15 +78,18 @@ public class FriendController {
       User me = getCurrentUserFromToken(authHeader);
       if (me == null) return ResponseEntity.status(401).body("Not authenticated");
       List<User> friends = friendService.getFriends(me);
-      return ResponseEntity.ok(
-          friends.stream()
-              .map(
-                  u ->
-                      Map.of(
-                          "id", u.getId(),
-                          "name", userDisplayUtil.getDisplayName(u),
-                          "username", u.getUsername(),
-                          "picture", u.getProfilePictureUrl())));
+      List<Map<String, Object>> out = new ArrayList<>(friends.size());
+      for (User u : friends) {
+        // HashMap rather than Map.of: username and picture may be null.
+        Map<String, Object> friend = new HashMap<>();
+        friend.put("id", u.getId());
+        friend.put("name", userDisplayUtil.getDisplayName(u));
+        friend.put("username", u.getUsername());
+        friend.put("picture", u.getProfilePictureUrl());
+        friend.put("online", presenceRegistry.isOnline(u.getId()));
+        out.add(friend);
+      }
+      return ResponseEntity.ok(out);
     } catch (Exception e) {
       return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
     }
@@ -1,5 +1,6 @@
 package com.flow.backend.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.time.Instant;
 import java.util.UUID;
 
@@ -14,6 +15,14 @@ public class ChatMessageDTO {
   private String attachmentUrl;
   private String attachmentType;
   private String attachmentName;
+  private Long seq;
+
+  // Echoed back to the sending client only; not stored with the message.
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private UUID clientMessageId;
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String highlight;
 
   public ChatMessageDTO() {}
 
@@ -60,6 +69,32 @@ public class ChatMessageDTO {
     this.attachmentName = attachmentName;
   }
 
+  public ChatMessageDTO(
+      UUID id,
+      UUID friendshipId,
+      UUID senderId,
+      String senderName,
+      String senderPicture,
+      String content,
+      Instant createdAt,
+      String attachmentUrl,
+      String attachmentType,
+      String attachmentName,
+      Long seq) {
+    this(
+        id,
+        friendshipId,
+        senderId,
+        senderName,
+        senderPicture,
+        content,
+        createdAt,
+        attachmentUrl,
+        attachmentType,
+        attachmentName);
+    this.seq = seq;
+  }
+
   public UUID getId() {
     return id;
   }
@@ -139,4 +174,28 @@ public class ChatMessageDTO {
   public void setAttachmentName(String attachmentName) {
     this.attachmentName = attachmentName;
   }
+
+  public Long getSeq() {
+    return seq;
+  }
+
+  public void setSeq(Long seq) {
+    this.seq = seq;
+  }
+
+  public UUID getClientMessageId() {
+    return clientMessageId;
+  }
+
+  public void setClientMessageId(UUID clientMessageId) {
+    this.clientMessageId = clientMessageId;
+  }
+
+  public String getHighlight() {
+    return highlight;
+  }
+
+  public void setHighlight(String highlight) {
+    this.highlight = highlight;
+  }
 }
@@ -0,0 +1,31 @@
+package com.flow.backend.dto;
+
+import java.util.List;
+
+public class ChatMessagePageDTO {
+  private List<ChatMessageDTO> messages;
+  private String nextCursor;
+
+  public ChatMessagePageDTO() {}
+
+  public ChatMessagePageDTO(List<ChatMessageDTO> messages, String nextCursor) {
+    this.messages = messages;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<ChatMessageDTO> getMessages() {
+    return messages;
+  }
+
+  public void setMessages(List<ChatMessageDTO> messages) {
+    this.messages = messages;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+}
@@ -0,0 +1,30 @@
+package com.flow.backend.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public interface ChatMessageSearchRow {
+  UUID getId();
+
+  UUID getFriendshipId();
+
+  UUID getSenderId();
+
+  String getSenderName();
+
+  String getSenderPicture();
+
+  String getContent();
+
+  Instant getCreatedAt();
+
+  String getAttachmentUrl();
+
+  String getAttachmentType();
+
+  String getAttachmentName();
+
+  Long getSeq();
+
+  String getHighlight();
+}
@@ -0,0 +1,44 @@
+package com.flow.backend.dto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class ChatSyncPageDTO {
+  private List<ChatMessageDTO> messages;
+  private Map<UUID, Long> watermarks;
+  private boolean hasMore;
+
+  public ChatSyncPageDTO() {}
+
+  public ChatSyncPageDTO(
+      List<ChatMessageDTO> messages, Map<UUID, Long> watermarks, boolean hasMore) {
+    this.messages = messages;
+    this.watermarks = watermarks;
+    this.hasMore = hasMore;
+  }
+
+  public List<ChatMessageDTO> getMessages() {
+    return messages;
+  }
+
+  public void setMessages(List<ChatMessageDTO> messages) {
+    this.messages = messages;
+  }
+
+  public Map<UUID, Long> getWatermarks() {
+    return watermarks;
+  }
+
+  public void setWatermarks(Map<UUID, Long> watermarks) {
+    this.watermarks = watermarks;
+  }
+
+  public boolean isHasMore() {
+    return hasMore;
+  }
+
+  public void setHasMore(boolean hasMore) {
+    this.hasMore = hasMore;
+  }
+}
@@ -0,0 +1,137 @@
+package com.flow.backend.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public class ConversationSummaryDTO {
+  private UUID friendshipId;
+  private UUID userId;
+  private String username;
+  private String name;
+  private String picture;
+  private UUID lastMessageId;
+  private UUID lastMessageSenderId;
+  private String lastMessageSnippet;
+  private Instant lastMessageAt;
+  private int unreadCount;
+  private String lastReadCursor;
+
+  public ConversationSummaryDTO() {}
+
+  public ConversationSummaryDTO(
+      UUID friendshipId,
+      UUID userId,
+      String username,
+      String name,
+      String picture,
+      UUID lastMessageId,
+      UUID lastMessageSenderId,
+      String lastMessageSnippet,
+      Instant lastMessageAt,
+      int unreadCount,
+      UUID lastReadMessageId,
+      Instant lastReadAt) {
+    this.friendshipId = friendshipId;
+    this.userId = userId;
+    this.username = username;
+    this.name = name;
+    this.picture = picture;
+    this.lastMessageId = lastMessageId;
+    this.lastMessageSenderId = lastMessageSenderId;
+    this.lastMessageSnippet = lastMessageSnippet;
+    this.lastMessageAt = lastMessageAt;
+    this.unreadCount = unreadCount;
+    this.lastReadCursor =
+        lastReadMessageId == null
+            ? null
+            : new MessageCursor(lastReadAt, lastReadMessageId).encode();
+  }
+
+  public UUID getFriendshipId() {
+    return friendshipId;
+  }
+
+  public void setFriendshipId(UUID friendshipId) {
+    this.friendshipId = friendshipId;
+  }
+
+  public UUID getUserId() {
+    return userId;
+  }
+
+  public void setUserId(UUID userId) {
+    this.userId = userId;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public void setUsername(String username) {
+    this.username = username;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getPicture() {
+    return picture;
+  }
+
+  public void setPicture(String picture) {
+    this.picture = picture;
+  }
+
+  public UUID getLastMessageId() {
+    return lastMessageId;
+  }
+
+  public void setLastMessageId(UUID lastMessageId) {
+    this.lastMessageId = lastMessageId;
+  }
+
+  public UUID getLastMessageSenderId() {
+    return lastMessageSenderId;
+  }
+
+  public void setLastMessageSenderId(UUID lastMessageSenderId) {
+    this.lastMessageSenderId = lastMessageSenderId;
+  }
+
+  public String getLastMessageSnippet() {
+    return lastMessageSnippet;
+  }
+
+  public void setLastMessageSnippet(String lastMessageSnippet) {
+    this.lastMessageSnippet = lastMessageSnippet;
+  }
+
+  public Instant getLastMessageAt() {
+    return lastMessageAt;
+  }
+
+  public void setLastMessageAt(Instant lastMessageAt) {
+    this.lastMessageAt = lastMessageAt;
+  }
+
+  public int getUnreadCount() {
+    return unreadCount;
+  }
+
+  public void setUnreadCount(int unreadCount) {
+    this.unreadCount = unreadCount;
+  }
+
+  public String getLastReadCursor() {
+    return lastReadCursor;
+  }
+
+  public void setLastReadCursor(String lastReadCursor) {
+    this.lastReadCursor = lastReadCursor;
+  }
+}
@@ -0,0 +1,61 @@
+package com.flow.backend.dto;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.UUID;
+
+public class MessageCursor {
+  // Same order as the (created_at, id) keyset queries. Postgres compares uuids as unsigned bytes,
+  // which is the order of their lowercase hex strings rather than UUID.compareTo.
+  public static final Comparator<ChatMessageDTO> CHRONOLOGICAL =
+      Comparator.comparing(ChatMessageDTO::getCreatedAt).thenComparing(m -> m.getId().toString());
+
+  private final Instant createdAt;
+  private final UUID id;
+
+  public MessageCursor(Instant createdAt, UUID id) {
+    this.createdAt = createdAt;
+    this.id = id;
+  }
+
+  public static MessageCursor of(ChatMessageDTO message) {
+    return new MessageCursor(message.getCreatedAt(), message.getId());
+  }
+
+  public static MessageCursor parse(String value) {
+    if (value == null || value.isBlank()) return null;
+    int sep = value.lastIndexOf(',');
+    if (sep <= 0 || sep == value.length() - 1) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+    try {
+      return new MessageCursor(
+          Instant.parse(value.substring(0, sep)), UUID.fromString(value.substring(sep + 1)));
+    } catch (DateTimeParseException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  public UUID getId() {
+    return id;
+  }
+
+  public int compareTo(ChatMessageDTO message) {
+    int c = createdAt.compareTo(message.getCreatedAt());
+    return c != 0 ? c : id.toString().compareTo(message.getId().toString());
+  }
+
+  public String encode() {
+    return createdAt.toString() + "," + id;
+  }
+
+  @Override
+  public String toString() {
+    return encode();
+  }
+}
@@ -0,0 +1,35 @@
+package com.flow.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.UUID;
+
+// The sender fields a message needs, captured once (e.g. at STOMP CONNECT) so sends do not load
+// the user again.
+public final class UserSnapshot {
+  private final UUID id;
+  private final String displayName;
+  private final String profilePictureUrl;
+
+  @JsonCreator
+  public UserSnapshot(
+      @JsonProperty("id") UUID id,
+      @JsonProperty("displayName") String displayName,
+      @JsonProperty("profilePictureUrl") String profilePictureUrl) {
+    this.id = id;
+    this.displayName = displayName;
+    this.profilePictureUrl = profilePictureUrl;
+  }
+
+  public UUID getId() {
+    return id;
+  }
+
+  public String getDisplayName() {
+    return displayName;
+  }
+
+  public String getProfilePictureUrl() {
+    return profilePictureUrl;
+  }
+}
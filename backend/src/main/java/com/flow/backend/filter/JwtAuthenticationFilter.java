@@ -1,6 +1,7 @@
 package com.flow.backend.filter;
 
 import com.flow.backend.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,24 +27,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     final String authorizationHeader = request.getHeader("Authorization");
 
-    String email = null;
-    String jwt = null;
-
     if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-      jwt = authorizationHeader.substring(7);
-      try {
-        email = jwtUtil.extractUsername(jwt);
-      } catch (Exception e) {
-        logger.error("Cannot extract username from JWT token", e);
-      }
-    }
-
-    if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-      if (jwtUtil.validateToken(jwt, email)) {
-        UsernamePasswordAuthenticationToken authToken =
-            new UsernamePasswordAuthenticationToken(email, null, new ArrayList<>());
-        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-        SecurityContextHolder.getContext().setAuthentication(authToken);
+      String jwt = authorizationHeader.substring(7);
+      Claims claims = jwtUtil.verify(jwt).orElse(null);
+      if (claims == null) {
+        logger.error("Cannot extract username from JWT token");
+      } else {
+        // Controllers read the claims back through AuthUtil instead of parsing the token again.
+        request.setAttribute(JwtUtil.TOKEN_ATTRIBUTE, jwt);
+        request.setAttribute(JwtUtil.CLAIMS_ATTRIBUTE, claims);
+
+        String email = claims.getSubject();
+        if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+          UsernamePasswordAuthenticationToken authToken =
+              new UsernamePasswordAuthenticationToken(email, null, new ArrayList<>());
+          authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+          SecurityContextHolder.getContext().setAuthentication(authToken);
+        }
       }
     }
     chain.doFilter(request, response);
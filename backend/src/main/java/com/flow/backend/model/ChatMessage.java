@@ -3,23 +3,28 @@ package com.flow.backend.model;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(
+    name = "chat_messages",
+    indexes = {
+      @Index(
+          name = "idx_chat_messages_friendship_created_id",
+          columnList = "friendship_id, created_at DESC, id DESC"),
+      @Index(name = "idx_chat_messages_friendship_seq", columnList = "friendship_id, seq")
+    })
 public class ChatMessage {
 
-  @Id
-  @GeneratedValue(strategy = GenerationType.UUID)
-  private UUID id;
+  @Id @GeneratedUuidV7 private UUID id;
 
   @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "friendship_id", nullable = false)
@@ -44,9 +49,15 @@ public class ChatMessage {
   @Column(name = "created_at", nullable = false)
   private Instant createdAt;
 
+  // Per-conversation sequence number, dense and increasing in commit order.
+  @Column(name = "seq")
+  private Long seq;
+
   @PrePersist
   protected void onCreate() {
-    createdAt = Instant.now();
+    // Postgres keeps microseconds; truncating here keeps the in-memory value equal to the stored
+    // one.
+    createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
   }
 
   public ChatMessage() {}
@@ -135,4 +146,12 @@ public class ChatMessage {
   public void setCreatedAt(Instant createdAt) {
     this.createdAt = createdAt;
   }
+
+  public Long getSeq() {
+    return seq;
+  }
+
+  public void setSeq(Long seq) {
+    this.seq = seq;
+  }
 }
@@ -0,0 +1,81 @@
+package com.flow.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.Instant;
+import java.util.UUID;
+
+// Client-generated ids of sent messages, claimed by MessageDeduplicator with native inserts. Kept
+// out of chat_messages because a unique constraint on the partitioned table would have to include
+// created_at, which a retry does not share with the original.
+@Entity
+@Table(
+    name = "client_message_ids",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"sender_id", "client_message_id"}),
+    indexes = {
+      @Index(name = "idx_client_message_ids_created", columnList = "created_at"),
+      @Index(name = "idx_client_message_ids_friendship", columnList = "friendship_id")
+    })
+public class ClientMessageId {
+
+  @Id @GeneratedUuidV7 private UUID id;
+
+  @Column(name = "sender_id", nullable = false)
+  private UUID senderId;
+
+  @Column(name = "client_message_id", nullable = false)
+  private UUID clientMessageId;
+
+  @Column(name = "friendship_id", nullable = false)
+  private UUID friendshipId;
+
+  // Filled in once the message is stored, in the same transaction as the claim.
+  @Column(name = "message_id")
+  private UUID messageId;
+
+  @Column(name = "message_created_at")
+  private Instant messageCreatedAt;
+
+  @Column(name = "created_at", nullable = false)
+  private Instant createdAt;
+
+  @PrePersist
+  protected void onCreate() {
+    createdAt = Instant.now();
+  }
+
+  public ClientMessageId() {}
+
+  public UUID getId() {
+    return id;
+  }
+
+  public UUID getSenderId() {
+    return senderId;
+  }
+
+  public UUID getClientMessageId() {
+    return clientMessageId;
+  }
+
+  public UUID getFriendshipId() {
+    return friendshipId;
+  }
+
+  public UUID getMessageId() {
+    return messageId;
+  }
+
+  public Instant getMessageCreatedAt() {
+    return messageCreatedAt;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+}
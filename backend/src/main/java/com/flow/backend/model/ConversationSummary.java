@@ -0,0 +1,107 @@
+package com.flow.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.Instant;
+import java.util.UUID;
+
+// One row per friendship and participant, maintained by ConversationSummaryService with native
+// upserts as messages are written and read.
+@Entity
+@Table(
+    name = "conversation_summaries",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"friendship_id", "user_id"}),
+    indexes = {
+      @Index(
+          name = "idx_conversation_summaries_user_last_message",
+          columnList = "user_id, last_message_at DESC")
+    })
+public class ConversationSummary {
+
+  @Id @GeneratedUuidV7 private UUID id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "friendship_id", nullable = false)
+  private Friendship friendship;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "user_id", nullable = false)
+  private User user;
+
+  @Column(name = "last_message_id")
+  private UUID lastMessageId;
+
+  @Column(name = "last_message_sender_id")
+  private UUID lastMessageSenderId;
+
+  @Column(name = "last_message_snippet", length = 200)
+  private String lastMessageSnippet;
+
+  @Column(name = "last_message_at")
+  private Instant lastMessageAt;
+
+  @Column(name = "unread_count", nullable = false)
+  private int unreadCount;
+
+  @Column(name = "last_read_message_id")
+  private UUID lastReadMessageId;
+
+  @Column(name = "last_read_at")
+  private Instant lastReadAt;
+
+  @Column(name = "updated_at", nullable = false)
+  private Instant updatedAt;
+
+  public ConversationSummary() {}
+
+  public UUID getId() {
+    return id;
+  }
+
+  public Friendship getFriendship() {
+    return friendship;
+  }
+
+  public User getUser() {
+    return user;
+  }
+
+  public UUID getLastMessageId() {
+    return lastMessageId;
+  }
+
+  public UUID getLastMessageSenderId() {
+    return lastMessageSenderId;
+  }
+
+  public String getLastMessageSnippet() {
+    return lastMessageSnippet;
+  }
+
+  public Instant getLastMessageAt() {
+    return lastMessageAt;
+  }
+
+  public int getUnreadCount() {
+    return unreadCount;
+  }
+
+  public UUID getLastReadMessageId() {
+    return lastReadMessageId;
+  }
+
+  public Instant getLastReadAt() {
+    return lastReadAt;
+  }
+
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+}
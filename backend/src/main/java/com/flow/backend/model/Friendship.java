@@ -12,9 +12,11 @@ import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 import java.util.UUID;
+import org.hibernate.annotations.SQLRestriction;
 
 @Entity
 @Table(name = "friendships")
+@SQLRestriction("deleted_at is null")
 public class Friendship {
 
   @Id
@@ -32,6 +34,19 @@ public class Friendship {
   @Column(name = "created_at", nullable = false)
   private LocalDateTime createdAt;
 
+  @Column(name = "deleted_at")
+  private LocalDateTime deletedAt;
+
+  // Last assigned message seq. Only ever advanced by MessageSequencer's UPDATE ... RETURNING, so it
+  // is kept out of entity inserts and updates.
+  @Column(
+      name = "message_seq",
+      nullable = false,
+      insertable = false,
+      updatable = false,
+      columnDefinition = "bigint default 0")
+  private long messageSeq;
+
   @PrePersist
   protected void onCreate() {
     createdAt = LocalDateTime.now();
@@ -75,4 +90,12 @@ public class Friendship {
   public void setCreatedAt(LocalDateTime createdAt) {
     this.createdAt = createdAt;
   }
+
+  public LocalDateTime getDeletedAt() {
+    return deletedAt;
+  }
+
+  public void setDeletedAt(LocalDateTime deletedAt) {
+    this.deletedAt = deletedAt;
+  }
 }
@@ -0,0 +1,79 @@
+package com.flow.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "message_purge_jobs")
+public class MessagePurgeJob {
+
+  @Id @GeneratedUuidV7 private UUID id;
+
+  @Column(name = "friendship_id", nullable = false)
+  private UUID friendshipId;
+
+  // Set when the purge is part of an account deletion.
+  @Column(name = "user_id")
+  private UUID userId;
+
+  @Column(name = "purged_messages", nullable = false)
+  private long purgedMessages;
+
+  @Column(name = "created_at", nullable = false)
+  private Instant createdAt;
+
+  @Column(name = "updated_at", nullable = false)
+  private Instant updatedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    createdAt = Instant.now();
+    updatedAt = createdAt;
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = Instant.now();
+  }
+
+  public MessagePurgeJob() {}
+
+  public MessagePurgeJob(UUID friendshipId, UUID userId) {
+    this.friendshipId = friendshipId;
+    this.userId = userId;
+  }
+
+  public UUID getId() {
+    return id;
+  }
+
+  public UUID getFriendshipId() {
+    return friendshipId;
+  }
+
+  public UUID getUserId() {
+    return userId;
+  }
+
+  public long getPurgedMessages() {
+    return purgedMessages;
+  }
+
+  public void setPurgedMessages(long purgedMessages) {
+    this.purgedMessages = purgedMessages;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+}
@@ -14,9 +14,11 @@ import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import org.hibernate.annotations.SQLRestriction;
 
 @Entity
 @Table(name = "users")
+@SQLRestriction("deleted_at is null")
 public class User {
 
   @Id
@@ -57,6 +59,9 @@ public class User {
   @Column(name = "last_login_at")
   private Instant lastLoginAt;
 
+  @Column(name = "deleted_at")
+  private Instant deletedAt;
+
   @PrePersist
   protected void onCreate() {
     createdAt = Instant.now();
@@ -158,6 +163,14 @@ public class User {
     this.lastLoginAt = lastLoginAt;
   }
 
+  public Instant getDeletedAt() {
+    return deletedAt;
+  }
+
+  public void setDeletedAt(Instant deletedAt) {
+    this.deletedAt = deletedAt;
+  }
+
   public String getUsername() {
     return username;
   }
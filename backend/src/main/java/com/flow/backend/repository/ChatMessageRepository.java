@@ -1,9 +1,12 @@
 package com.flow.backend.repository;
 
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.ChatMessageSearchRow;
 import com.flow.backend.model.ChatMessage;
-import com.flow.backend.model.Friendship;
-import com.flow.backend.model.User;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -15,21 +18,115 @@ import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
-  @Query("select m from ChatMessage m where m.friendship = :friendship order by m.createdAt desc")
-  List<ChatMessage> findByFriendship(@Param("friendship") Friendship friendship, Pageable pageable);
+  @Query(
+      "select new com.flow.backend.dto.ChatMessageDTO(m.id, m.friendship.id, s.id, coalesce(s.displayName, s.name), s.profilePictureUrl, m.content, m.createdAt, m.attachmentUrl, m.attachmentType, m.attachmentName, m.seq) from ChatMessage m join m.sender s where m.friendship.id = :friendshipId order by m.createdAt desc, m.id desc")
+  List<ChatMessageDTO> findDTOsByFriendshipId(
+      @Param("friendshipId") UUID friendshipId, Pageable pageable);
 
   @Query(
-      "select m from ChatMessage m where m.friendship = :friendship and lower(m.content) like lower(concat('%', :q, '%')) order by m.createdAt desc")
-  List<ChatMessage> searchByFriendshipAndContent(
-      @Param("friendship") Friendship friendship, @Param("q") String q, Pageable pageable);
+      "select new com.flow.backend.dto.ChatMessageDTO(m.id, m.friendship.id, s.id, coalesce(s.displayName, s.name), s.profilePictureUrl, m.content, m.createdAt, m.attachmentUrl, m.attachmentType, m.attachmentName, m.seq) from ChatMessage m join m.sender s where m.friendship.id = :friendshipId and m.createdAt <= :createdAt and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id)) order by m.createdAt desc, m.id desc")
+  List<ChatMessageDTO> findDTOsByFriendshipIdBefore(
+      @Param("friendshipId") UUID friendshipId,
+      @Param("createdAt") Instant createdAt,
+      @Param("id") UUID id,
+      Pageable pageable);
 
-  @Modifying
-  @Transactional
-  @Query("delete from ChatMessage m where m.friendship.id = :friendshipId")
-  void deleteByFriendshipId(@Param("friendshipId") UUID friendshipId);
+  @Query(
+      "select new com.flow.backend.dto.ChatMessageDTO(m.id, m.friendship.id, s.id, coalesce(s.displayName, s.name), s.profilePictureUrl, m.content, m.createdAt, m.attachmentUrl, m.attachmentType, m.attachmentName, m.seq) from ChatMessage m join m.sender s where m.friendship.id = :friendshipId and m.createdAt >= :createdAt and (m.createdAt > :createdAt or (m.createdAt = :createdAt and m.id > :id)) order by m.createdAt asc, m.id asc")
+  List<ChatMessageDTO> findDTOsByFriendshipIdAfter(
+      @Param("friendshipId") UUID friendshipId,
+      @Param("createdAt") Instant createdAt,
+      @Param("id") UUID id,
+      Pageable pageable);
+
+  // One seq-ordered index scan per conversation, each starting above that conversation's
+  // watermark; the result is ordered by conversation so every one comes back as a prefix.
+  @Query(
+      value =
+          "select m.id as \"id\", m.friendship_id as \"friendshipId\", u.id as \"senderId\", coalesce(u.display_name, u.name) as \"senderName\", u.profile_picture_url as \"senderPicture\", m.content as \"content\", m.created_at as \"createdAt\", m.attachment_url as \"attachmentUrl\", m.attachment_type as \"attachmentType\", m.attachment_name as \"attachmentName\", m.seq as \"seq\", cast(null as text) as \"highlight\""
+              + " from unnest(cast(:friendshipIds as uuid[]), cast(:seqs as bigint[])) w(friendship_id, seq)"
+              + " cross join lateral (select c.* from chat_messages c where c.friendship_id = w.friendship_id and c.seq > w.seq order by c.seq asc limit :limit) m"
+              + " join users u on u.id = m.sender_id"
+              + " order by m.friendship_id asc, m.seq asc limit :limit",
+      nativeQuery = true)
+  List<ChatMessageSearchRow> findRowsAfterSeq(
+      @Param("friendshipIds") UUID[] friendshipIds,
+      @Param("seqs") Long[] seqs,
+      @Param("limit") int limit);
+
+  // Each anchor's neighbours come from two index-ordered LATERAL scans, so every window costs
+  // its own size however deep in the conversation it lies, and all of them share one round trip.
+  @Query(
+      value =
+          "select m.id as \"id\", m.friendship_id as \"friendshipId\", u.id as \"senderId\", coalesce(u.display_name, u.name) as \"senderName\", u.profile_picture_url as \"senderPicture\", m.content as \"content\", m.created_at as \"createdAt\", m.attachment_url as \"attachmentUrl\", m.attachment_type as \"attachmentType\", m.attachment_name as \"attachmentName\", m.seq as \"seq\", cast(null as text) as \"highlight\""
+              + " from (select distinct w.id, w.created_at from chat_messages a cross join lateral ("
+              + "(select b.id, b.created_at from chat_messages b where b.friendship_id = a.friendship_id and (b.created_at, b.id) < (a.created_at, a.id) order by b.created_at desc, b.id desc limit :before)"
+              + " union all (select b.id, b.created_at from chat_messages b where b.friendship_id = a.friendship_id and (b.created_at, b.id) > (a.created_at, a.id) order by b.created_at asc, b.id asc limit :after)) w"
+              + " where a.friendship_id = :friendshipId and a.id in :ids) n"
+              + " join chat_messages m on m.friendship_id = :friendshipId and m.id = n.id and m.created_at = n.created_at"
+              + " join users u on u.id = m.sender_id"
+              + " order by m.created_at asc, m.id asc",
+      nativeQuery = true)
+  List<ChatMessageSearchRow> findRowsAround(
+      @Param("friendshipId") UUID friendshipId,
+      @Param("ids") Collection<UUID> ids,
+      @Param("before") int before,
+      @Param("after") int after);
+
+  @Query(
+      "select new com.flow.backend.dto.ChatMessageDTO(m.id, m.friendship.id, s.id, coalesce(s.displayName, s.name), s.profilePictureUrl, m.content, m.createdAt, m.attachmentUrl, m.attachmentType, m.attachmentName, m.seq) from ChatMessage m join m.sender s where m.friendship.id = :friendshipId and m.seq between :fromSeq and :toSeq order by m.seq asc")
+  List<ChatMessageDTO> findDTOsByFriendshipIdAndSeqBetween(
+      @Param("friendshipId") UUID friendshipId,
+      @Param("fromSeq") long fromSeq,
+      @Param("toSeq") long toSeq);
+
+  @Query(
+      "select new com.flow.backend.dto.ChatMessageDTO(m.id, m.friendship.id, s.id, coalesce(s.displayName, s.name), s.profilePictureUrl, m.content, m.createdAt, m.attachmentUrl, m.attachmentType, m.attachmentName, m.seq) from ChatMessage m join m.sender s where m.friendship.id = :friendshipId and m.createdAt = :createdAt and m.id = :id")
+  Optional<ChatMessageDTO> findDTOByFriendshipIdAndPosition(
+      @Param("friendshipId") UUID friendshipId,
+      @Param("createdAt") Instant createdAt,
+      @Param("id") UUID id);
+
+  @Query(
+      "select new com.flow.backend.dto.ChatMessageDTO(m.id, m.friendship.id, s.id, coalesce(s.displayName, s.name), s.profilePictureUrl, m.content, m.createdAt, m.attachmentUrl, m.attachmentType, m.attachmentName, m.seq) from ChatMessage m join m.sender s where m.friendship.id = :friendshipId order by m.createdAt asc, m.id asc")
+  List<ChatMessageDTO> findOldestDTOsByFriendshipId(
+      @Param("friendshipId") UUID friendshipId, Pageable pageable);
+
+  @Query(
+      value =
+          "select m.id as \"id\", m.friendship_id as \"friendshipId\", u.id as \"senderId\", coalesce(u.display_name, u.name) as \"senderName\", u.profile_picture_url as \"senderPicture\", m.content as \"content\", m.created_at as \"createdAt\", m.attachment_url as \"attachmentUrl\", m.attachment_type as \"attachmentType\", m.attachment_name as \"attachmentName\", m.seq as \"seq\", cast(null as text) as \"highlight\""
+              + " from chat_messages m join users u on u.id = m.sender_id"
+              + " where m.friendship_id = :friendshipId and m.content ilike :pattern"
+              + " order by m.created_at desc, m.id desc limit :limit",
+      nativeQuery = true)
+  List<ChatMessageSearchRow> searchBySubstring(
+      @Param("friendshipId") UUID friendshipId,
+      @Param("pattern") String pattern,
+      @Param("limit") int limit);
+
+  // Content is HTML-escaped before ts_headline adds its tags, so highlights render as markup
+  // safely.
+  @Query(
+      value =
+          "select h.*, case when :highlight then ts_headline('simple', replace(replace(replace(replace(h.\"content\", '&', '&amp;'), '<', '&lt;'), '>', '&gt;'), '\"', '&quot;'), websearch_to_tsquery('simple', :q), 'StartSel=<mark>, StopSel=</mark>, HighlightAll=true') end as \"highlight\""
+              + " from (select m.id as \"id\", m.friendship_id as \"friendshipId\", u.id as \"senderId\", coalesce(u.display_name, u.name) as \"senderName\", u.profile_picture_url as \"senderPicture\", m.content as \"content\", m.created_at as \"createdAt\", m.attachment_url as \"attachmentUrl\", m.attachment_type as \"attachmentType\", m.attachment_name as \"attachmentName\", m.seq as \"seq\", ts_rank_cd(m.content_tsv, websearch_to_tsquery('simple', :q)) as \"rank\""
+              + " from chat_messages m join users u on u.id = m.sender_id"
+              + " where m.friendship_id = :friendshipId and m.content_tsv @@ websearch_to_tsquery('simple', :q)"
+              + " order by \"rank\" desc, m.created_at desc, m.id desc limit :limit) h"
+              + " order by h.\"rank\" desc, h.\"createdAt\" desc, h.\"id\" desc",
+      nativeQuery = true)
+  List<ChatMessageSearchRow> searchByFullText(
+      @Param("friendshipId") UUID friendshipId,
+      @Param("q") String q,
+      @Param("limit") int limit,
+      @Param("highlight") boolean highlight);
 
   @Modifying
   @Transactional
-  @Query("delete from ChatMessage m where m.sender = :user")
-  void deleteByUser(@Param("user") User user);
+  @Query(
+      value =
+          "delete from chat_messages where id in (select id from chat_messages where friendship_id = :friendshipId limit :limit)",
+      nativeQuery = true)
+  int deleteBatchByFriendshipId(
+      @Param("friendshipId") UUID friendshipId, @Param("limit") int limit);
 }
@@ -0,0 +1,18 @@
+package com.flow.backend.repository;
+
+import com.flow.backend.dto.ConversationSummaryDTO;
+import com.flow.backend.model.ConversationSummary;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, UUID> {
+
+  @Query(
+      "select new com.flow.backend.dto.ConversationSummaryDTO(f.id, o.id, o.username, coalesce(o.displayName, o.name), o.profilePictureUrl, s.lastMessageId, s.lastMessageSenderId, s.lastMessageSnippet, s.lastMessageAt, s.unreadCount, s.lastReadMessageId, s.lastReadAt) from ConversationSummary s join s.friendship f join User o on (o = f.userA or o = f.userB) and o <> s.user where s.user.id = :userId order by s.lastMessageAt desc nulls last, f.createdAt desc")
+  List<ConversationSummaryDTO> findInbox(@Param("userId") UUID userId);
+}
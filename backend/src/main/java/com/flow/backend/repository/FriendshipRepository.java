@@ -2,14 +2,13 @@ package com.flow.backend.repository;
 
 import com.flow.backend.model.Friendship;
 import com.flow.backend.model.User;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface FriendshipRepository extends JpaRepository<Friendship, UUID> {
@@ -17,6 +16,25 @@ public interface FriendshipRepository extends JpaRepository<Friendship, UUID> {
   @Query("select f from Friendship f where f.userA = :user or f.userB = :user")
   List<Friendship> findByUser(@Param("user") User user);
 
+  @Query("select f.id from Friendship f where f.userA.id = :userId or f.userB.id = :userId")
+  List<UUID> findIdsByUserId(@Param("userId") UUID userId);
+
+  @Query("select f.id from Friendship f where f.id in :ids")
+  List<UUID> findIdsByIdIn(@Param("ids") Collection<UUID> ids);
+
+  // Native so tombstoned friendships, still waiting on their message purge, count as well.
+  @Query(
+      value =
+          "select exists (select 1 from friendships where user_a_id = :userId"
+              + " or user_b_id = :userId)",
+      nativeQuery = true)
+  boolean existsAnyByUserIdIncludingDeleted(@Param("userId") UUID userId);
+
+  @Query(
+      "select u.email from Friendship f, User u where (f.userA.id = :userId and u = f.userB)"
+          + " or (f.userB.id = :userId and u = f.userA)")
+  List<String> findFriendEmailsByUserId(@Param("userId") UUID userId);
+
   @Query(
       "select case when count(f)>0 then true else false end from Friendship f where (f.userA = :a and f.userB = :b) or (f.userA = :b and f.userB = :a)")
   boolean existsBetween(@Param("a") User a, @Param("b") User b);
@@ -24,9 +42,4 @@ public interface FriendshipRepository extends JpaRepository<Friendship, UUID> {
   @Query(
       "select f from Friendship f where (f.userA = :a and f.userB = :b) or (f.userA = :b and f.userB = :a)")
   java.util.Optional<Friendship> findBetween(@Param("a") User a, @Param("b") User b);
-
-  @Modifying
-  @Transactional
-  @Query("delete from Friendship f where f.userA = :user or f.userB = :user")
-  void deleteByUser1OrUser2(@Param("user") User user);
 }
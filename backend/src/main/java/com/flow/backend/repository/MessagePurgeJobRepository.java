@@ -0,0 +1,13 @@
+package com.flow.backend.repository;
+
+import com.flow.backend.model.MessagePurgeJob;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MessagePurgeJobRepository extends JpaRepository<MessagePurgeJob, UUID> {
+
+  List<MessagePurgeJob> findAllByOrderByCreatedAtAsc();
+}
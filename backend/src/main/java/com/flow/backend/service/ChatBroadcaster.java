@@ -0,0 +1,75 @@
+package com.flow.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.flow.backend.dto.ChatMessageDTO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class ChatBroadcaster {
+
+  @Autowired private ChatFanout chatFanout;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private ObjectWriter messageWriter;
+  private Timer encodeTimer;
+  private DistributionSummary payloadSize;
+
+  @PostConstruct
+  public void init() {
+    messageWriter = objectMapper.writerFor(ChatMessageDTO.class);
+    encodeTimer =
+        Timer.builder("chat.broadcast.encode")
+            .description("Time to serialize one chat message for broadcast")
+            .register(meterRegistry);
+    payloadSize =
+        DistributionSummary.builder("chat.broadcast.payload.size")
+            .description("Encoded size of broadcast chat messages")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+  }
+
+  public void broadcast(ChatMessageDTO message) {
+    publish(topic(message.getFriendshipId()), encode(message));
+  }
+
+  public byte[] encode(ChatMessageDTO message) {
+    long start = System.nanoTime();
+    try {
+      byte[] payload = messageWriter.writeValueAsBytes(message);
+      payloadSize.record(payload.length);
+      return payload;
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not encode chat message " + message.getId(), e);
+    } finally {
+      encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public void broadcast(String destination, Object event) {
+    try {
+      publish(destination, objectMapper.writeValueAsBytes(event));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not encode event for " + destination, e);
+    }
+  }
+
+  public void publish(String destination, byte[] payload) {
+    chatFanout.publish(destination, payload);
+  }
+
+  public static String topic(UUID friendshipId) {
+    return "/topic/chats/" + friendshipId;
+  }
+}
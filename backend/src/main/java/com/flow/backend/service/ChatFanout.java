@@ -0,0 +1,72 @@
+package com.flow.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Delivers a pre-encoded broadcast to every subscribed session. LocalChatFanout reaches the
+// sessions on this node; relay implementations also carry /topic/chats/** to the other nodes,
+// along with the node-local state changes the other nodes must apply too.
+public interface ChatFanout {
+
+  String RELAYED_PREFIX = "/topic/chats/";
+
+  // Marks an envelope as a PeerEvent rather than a broadcast: "#<type>" in the destination.
+  String EVENT_PREFIX = "#";
+
+  // Sent to the listeners of PeerEvent on the other nodes. data is a single line of text. Inside a
+  // transaction the event goes out once it commits, so no node acts on a change that rolls back.
+  void publishEvent(String type, String data);
+
+  // False when there is no other node to tell, so callers can skip encoding events.
+  boolean hasPeers();
+
+  void publish(String destination, byte[] payload);
+
+  // Runs send once the surrounding transaction has committed, or right away outside one. Hooked on
+  // afterCompletion rather than afterCommit: it also runs when registered from another
+  // synchronization's afterCommit, as the history cache's appends are.
+  static void afterCommit(Runnable send) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      send.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) send.run();
+          }
+        });
+  }
+
+  // A state change made on another node, published to this node's listeners; resync is published
+  // when the relay may have missed events.
+  record PeerEvent(String node, String type, String data) {
+
+    public static final String RESYNC = "resync";
+  }
+
+  // Wire form shared by the relays: "<node> <destination> <json>". Destinations never contain a
+  // space and the JSON is UTF-8 text, so a single line is enough.
+  record Envelope(String node, String destination, String payload) {
+
+    public static Envelope of(String node, String destination, byte[] payload) {
+      return new Envelope(node, destination, new String(payload, StandardCharsets.UTF_8));
+    }
+
+    public static Envelope decode(String wire) {
+      String[] parts = wire.split(" ", 3);
+      if (parts.length != 3) throw new IllegalArgumentException("Malformed fan-out envelope");
+      return new Envelope(parts[0], parts[1], parts[2]);
+    }
+
+    public String encode() {
+      return node + " " + destination + " " + payload;
+    }
+
+    public byte[] payloadBytes() {
+      return payload.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+}
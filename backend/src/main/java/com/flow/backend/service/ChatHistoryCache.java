@@ -0,0 +1,282 @@
+package com.flow.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flow.backend.config.ChatHistoryCacheProperties;
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.MessageCursor;
+import com.flow.backend.dto.UserSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Appends, invalidations and sender updates are relayed to the other nodes' caches as peer
+// events, so each node's buffers follow writes made anywhere.
+@Service
+public class ChatHistoryCache {
+
+  private static final String APPEND_EVENT = "history-append";
+  private static final String INVALIDATE_EVENT = "history-invalidate";
+  private static final String SENDER_EVENT = "history-sender";
+
+  @Autowired private ChatHistoryCacheProperties properties;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private ChatFanout chatFanout;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  private static final int MAX_RENAMED = 100_000;
+
+  private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+  // Current display fields of users who edited their profile while this node was up. Messages can
+  // arrive with older ones: a sender's STOMP session keeps the snapshot taken at CONNECT, and a
+  // load may have read the users row just before the edit. They are rewritten on the way in.
+  private final ConcurrentHashMap<UUID, UserSnapshot> renamed = new ConcurrentHashMap<>();
+
+  private Counter hits;
+  private Counter misses;
+  private Counter evictions;
+
+  @PostConstruct
+  public void init() {
+    hits = meterRegistry.counter("chat.history.cache.hits");
+    misses = meterRegistry.counter("chat.history.cache.misses");
+    evictions = meterRegistry.counter("chat.history.cache.evictions");
+    meterRegistry.gaugeMapSize("chat.history.cache.conversations", List.of(), entries);
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  public int getCapacity() {
+    return properties.getMessagesPerConversation();
+  }
+
+  // Returns up to count messages older than before (or the newest when before is null), newest
+  // first, or empty when the buffer cannot answer without going to the database.
+  public Optional<List<ChatMessageDTO>> getBefore(
+      UUID friendshipId, MessageCursor before, int count) {
+    if (!properties.isEnabled()) return Optional.empty();
+    Entry entry = entries.get(friendshipId);
+    if (entry != null) {
+      Optional<List<ChatMessageDTO>> result = entry.getBefore(before, count);
+      if (result.isPresent()) {
+        hits.increment();
+        return result;
+      }
+    }
+    misses.increment();
+    return Optional.empty();
+  }
+
+  // Registers the conversation before its history is read, so messages committed while the read
+  // is in flight are buffered and merged instead of lost.
+  public void beginLoad(UUID friendshipId) {
+    if (!properties.isEnabled()) return;
+    entries.computeIfAbsent(friendshipId, id -> new Entry(properties.getMessagesPerConversation()));
+    if (entries.size() > properties.getMaxConversations()) evictLeastRecentlyUsed();
+  }
+
+  public void finishLoad(UUID friendshipId, List<ChatMessageDTO> newestFirst, boolean complete) {
+    Entry entry = entries.get(friendshipId);
+    if (entry != null)
+      entry.load(newestFirst.stream().map(this::withCurrentSender).toList(), complete);
+  }
+
+  public void append(ChatMessageDTO message) {
+    if (!properties.isEnabled()) return;
+    addIfCached(message);
+    if (chatFanout.hasPeers()) chatFanout.publishEvent(APPEND_EVENT, toJson(message));
+  }
+
+  // Called after a profile edit commits, with the conversations the user takes part in.
+  public void updateSender(UserSnapshot sender, Collection<UUID> friendshipIds) {
+    if (!properties.isEnabled()) return;
+    rename(sender);
+    for (UUID friendshipId : friendshipIds) {
+      Entry entry = entries.get(friendshipId);
+      if (entry != null) entry.updateSender(sender);
+    }
+    if (chatFanout.hasPeers()) chatFanout.publishEvent(SENDER_EVENT, toJson(sender));
+  }
+
+  public void invalidate(UUID friendshipId) {
+    entries.remove(friendshipId);
+    chatFanout.publishEvent(INVALIDATE_EVENT, friendshipId.toString());
+  }
+
+  // Peers do not know which conversations a renamed sender is in; every buffer is checked.
+  @EventListener
+  public void onPeerEvent(ChatFanout.PeerEvent event) {
+    if (!properties.isEnabled()) return;
+    switch (event.type()) {
+      case APPEND_EVENT -> addIfCached(fromJson(event.data(), ChatMessageDTO.class));
+      case INVALIDATE_EVENT -> entries.remove(UUID.fromString(event.data()));
+      case SENDER_EVENT -> {
+        UserSnapshot sender = fromJson(event.data(), UserSnapshot.class);
+        rename(sender);
+        entries.values().forEach(entry -> entry.updateSender(sender));
+      }
+      case ChatFanout.PeerEvent.RESYNC -> entries.clear();
+      default -> {}
+    }
+  }
+
+  private void addIfCached(ChatMessageDTO message) {
+    Entry entry = entries.get(message.getFriendshipId());
+    if (entry != null) entry.add(withCurrentSender(message));
+  }
+
+  private void rename(UserSnapshot sender) {
+    if (renamed.size() >= MAX_RENAMED) renamed.clear();
+    renamed.put(sender.getId(), sender);
+  }
+
+  private String toJson(Object value) {
+    try {
+      return objectMapper.writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not encode history cache event", e);
+    }
+  }
+
+  private <T> T fromJson(String json, Class<T> type) {
+    try {
+      return objectMapper.readValue(json, type);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Malformed history cache event", e);
+    }
+  }
+
+  @Scheduled(fixedDelay = 60, timeUnit = TimeUnit.SECONDS)
+  public void evictIdle() {
+    long cutoff = System.nanoTime() - TimeUnit.SECONDS.toNanos(properties.getIdleTimeoutSeconds());
+    for (Map.Entry<UUID, Entry> e : entries.entrySet()) {
+      if (e.getValue().lastAccess - cutoff < 0 && entries.remove(e.getKey(), e.getValue())) {
+        evictions.increment();
+      }
+    }
+  }
+
+  private ChatMessageDTO withCurrentSender(ChatMessageDTO m) {
+    UserSnapshot sender = renamed.get(m.getSenderId());
+    return sender == null ? m : withSender(m, sender);
+  }
+
+  private static ChatMessageDTO withSender(ChatMessageDTO m, UserSnapshot sender) {
+    if (Objects.equals(m.getSenderName(), sender.getDisplayName())
+        && Objects.equals(m.getSenderPicture(), sender.getProfilePictureUrl())) {
+      return m;
+    }
+    // Copied rather than updated in place: the cached instance may be serialising right now.
+    ChatMessageDTO copy =
+        new ChatMessageDTO(
+            m.getId(),
+            m.getFriendshipId(),
+            m.getSenderId(),
+            sender.getDisplayName(),
+            sender.getProfilePictureUrl(),
+            m.getContent(),
+            m.getCreatedAt(),
+            m.getAttachmentUrl(),
+            m.getAttachmentType(),
+            m.getAttachmentName(),
+            m.getSeq());
+    copy.setClientMessageId(m.getClientMessageId());
+    return copy;
+  }
+
+  private void evictLeastRecentlyUsed() {
+    // Trim to 90% so a full cache does not pay for a scan on every subsequent load.
+    int target = properties.getMaxConversations() * 9 / 10;
+    List<Map.Entry<UUID, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+    snapshot.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+    for (int i = 0; i < snapshot.size() && entries.size() > target; i++) {
+      var e = snapshot.get(i);
+      if (entries.remove(e.getKey(), e.getValue())) evictions.increment();
+    }
+  }
+
+  private static final class Entry {
+    // Chronological ring: index 0 (at start) is the oldest buffered message.
+    private final ChatMessageDTO[] ring;
+    private int start;
+    private int size;
+    private boolean loaded;
+    private boolean complete;
+    private volatile long lastAccess = System.nanoTime();
+
+    private Entry(int capacity) {
+      ring = new ChatMessageDTO[capacity];
+    }
+
+    private ChatMessageDTO get(int i) {
+      return ring[(start + i) % ring.length];
+    }
+
+    private void set(int i, ChatMessageDTO m) {
+      ring[(start + i) % ring.length] = m;
+    }
+
+    private synchronized Optional<List<ChatMessageDTO>> getBefore(MessageCursor before, int count) {
+      if (!loaded) return Optional.empty();
+      lastAccess = System.nanoTime();
+      int end = size;
+      if (before != null) {
+        while (end > 0 && before.compareTo(get(end - 1)) <= 0) end--;
+      }
+      if (end < count && !complete) return Optional.empty();
+      List<ChatMessageDTO> out = new ArrayList<>(Math.min(count, end));
+      for (int i = end - 1; i >= 0 && out.size() < count; i--) out.add(get(i));
+      return Optional.of(out);
+    }
+
+    private synchronized void load(List<ChatMessageDTO> newestFirst, boolean complete) {
+      this.complete = complete;
+      for (ChatMessageDTO m : newestFirst) add(m);
+      loaded = true;
+    }
+
+    private synchronized void updateSender(UserSnapshot sender) {
+      for (int i = 0; i < size; i++) {
+        ChatMessageDTO m = get(i);
+        if (m.getSenderId().equals(sender.getId())) set(i, withSender(m, sender));
+      }
+    }
+
+    private synchronized void add(ChatMessageDTO m) {
+      int pos = size;
+      while (pos > 0 && MessageCursor.CHRONOLOGICAL.compare(get(pos - 1), m) > 0) pos--;
+      if (pos > 0 && get(pos - 1).getId().equals(m.getId())) return;
+      if (size == ring.length) {
+        complete = false;
+        if (pos == 0) return;
+        ring[start] = null;
+        start = (start + 1) % ring.length;
+        size--;
+        pos--;
+      }
+      for (int i = size; i > pos; i--) set(i, get(i - 1));
+      set(pos, m);
+      size++;
+    }
+  }
+}
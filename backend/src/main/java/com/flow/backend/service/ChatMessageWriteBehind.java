@@ -0,0 +1,248 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatWriteBehindProperties;
+import com.flow.backend.dto.ChatMessageDTO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+public class ChatMessageWriteBehind {
+
+  private static final Logger log = LoggerFactory.getLogger(ChatMessageWriteBehind.class);
+
+  private static final String INSERT_SQL =
+      "insert into chat_messages (id, friendship_id, sender_id, content, attachment_url,"
+          + " attachment_type, attachment_name, created_at, seq) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  @Autowired private ChatWriteBehindProperties properties;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private ConversationSummaryService conversationSummaryService;
+
+  @Autowired private MessageSequencer messageSequencer;
+
+  @Autowired private MessageDeduplicator messageDeduplicator;
+
+  private BlockingQueue<PendingMessage> queue;
+  private TransactionTemplate transactionTemplate;
+  private Thread flusher;
+  private volatile boolean running;
+
+  private DistributionSummary batchSize;
+  private Timer batchCommit;
+  private Timer writeLatency;
+
+  @PostConstruct
+  public void start() {
+    if (!properties.isEnabled()) return;
+
+    queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    batchSize =
+        DistributionSummary.builder("chat.persistence.batch.size")
+            .description("Messages committed per write-behind batch")
+            .register(meterRegistry);
+    batchCommit =
+        Timer.builder("chat.persistence.batch.commit")
+            .description("Time to insert and commit one write-behind batch")
+            .register(meterRegistry);
+    writeLatency =
+        Timer.builder("chat.persistence.write.latency")
+            .description("Time from enqueue until the message's batch committed")
+            .register(meterRegistry);
+    meterRegistry.gauge("chat.persistence.queue.depth", queue, BlockingQueue::size);
+
+    running = true;
+    flusher = new Thread(this::runLoop, "chat-write-behind");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (flusher == null) return;
+    running = false;
+    flusher.join(TimeUnit.SECONDS.toMillis(10));
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  public CompletableFuture<SentMessage> submit(ChatMessageDTO message) {
+    PendingMessage pending = new PendingMessage(message, System.nanoTime());
+    if (!running || !queue.offer(pending)) {
+      return CompletableFuture.failedFuture(new IllegalStateException("Message queue is full"));
+    }
+    return pending.future;
+  }
+
+  private void runLoop() {
+    List<PendingMessage> batch = new ArrayList<>(properties.getBatchSize());
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingMessage first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        if (first == null) continue;
+        batch.add(first);
+        long deadline =
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+        while (batch.size() < properties.getBatchSize()) {
+          queue.drainTo(batch, properties.getBatchSize() - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= properties.getBatchSize() || remaining <= 0) break;
+          PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) break;
+          batch.add(next);
+        }
+        flush(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        for (PendingMessage pending : batch) pending.future.completeExceptionally(e);
+        return;
+      } catch (RuntimeException e) {
+        log.error("Write-behind flush failed", e);
+        for (PendingMessage pending : batch) pending.future.completeExceptionally(e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void flush(List<PendingMessage> batch) {
+    long start = System.nanoTime();
+    List<PendingMessage> stored;
+    try {
+      stored =
+          transactionTemplate.execute(
+              status -> {
+                List<PendingMessage> fresh = claimClientIds(batch);
+                assignSequence(fresh);
+                jdbcTemplate.batchUpdate(INSERT_SQL, fresh, fresh.size(), this::bind);
+                conversationSummaryService.recordAll(fresh.stream().map(p -> p.message).toList());
+                return fresh;
+              });
+    } catch (RuntimeException e) {
+      // One bad row (e.g. a conversation deleted while queued) must not fail its neighbours.
+      log.warn("Batch insert of {} messages failed, retrying row by row", batch.size(), e);
+      for (PendingMessage pending : batch) {
+        try {
+          boolean inserted =
+              transactionTemplate.execute(
+                  status -> {
+                    if (claimClientIds(List.of(pending)).isEmpty()) return false;
+                    pending.message.setSeq(
+                        messageSequencer.next(pending.message.getFriendshipId()));
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, pending));
+                    conversationSummaryService.record(pending.message);
+                    return true;
+                  });
+          if (inserted) complete(pending);
+          else completeDuplicate(pending);
+        } catch (RuntimeException rowError) {
+          pending.future.completeExceptionally(rowError);
+        }
+      }
+      return;
+    }
+    batchCommit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    batchSize.record(stored.size());
+    for (PendingMessage pending : batch) {
+      if (stored.contains(pending)) complete(pending);
+      else completeDuplicate(pending);
+    }
+  }
+
+  // Drops messages whose client id was claimed by an earlier send, e.g. a retry that reached
+  // another node.
+  private List<PendingMessage> claimClientIds(List<PendingMessage> batch) {
+    List<ChatMessageDTO> withIds =
+        batch.stream().map(p -> p.message).filter(m -> m.getClientMessageId() != null).toList();
+    if (withIds.isEmpty()) return batch;
+    List<ChatMessageDTO> claimed = messageDeduplicator.claimAll(withIds);
+    return batch.stream()
+        .filter(p -> p.message.getClientMessageId() == null || claimed.contains(p.message))
+        .toList();
+  }
+
+  private void completeDuplicate(PendingMessage pending) {
+    messageDeduplicator
+        .findOriginal(pending.message)
+        .ifPresentOrElse(
+            original -> pending.future.complete(new SentMessage(original, true)),
+            () ->
+                pending.future.completeExceptionally(
+                    new IllegalArgumentException("Message id already used")));
+  }
+
+  // One range per conversation, taken in id order so concurrent flushers on other nodes lock the
+  // friendships rows in the same order.
+  private void assignSequence(List<PendingMessage> batch) {
+    Map<UUID, List<ChatMessageDTO>> byConversation = new TreeMap<>();
+    for (PendingMessage pending : batch) {
+      byConversation
+          .computeIfAbsent(pending.message.getFriendshipId(), id -> new ArrayList<>())
+          .add(pending.message);
+    }
+    for (Map.Entry<UUID, List<ChatMessageDTO>> e : byConversation.entrySet()) {
+      long seq = messageSequencer.reserve(e.getKey(), e.getValue().size());
+      for (ChatMessageDTO m : e.getValue()) m.setSeq(seq++);
+    }
+  }
+
+  private void complete(PendingMessage pending) {
+    writeLatency.record(System.nanoTime() - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+    pending.future.complete(new SentMessage(pending.message, false));
+  }
+
+  private void bind(PreparedStatement ps, PendingMessage pending) throws SQLException {
+    ChatMessageDTO m = pending.message;
+    ps.setObject(1, m.getId());
+    ps.setObject(2, m.getFriendshipId());
+    ps.setObject(3, m.getSenderId());
+    ps.setString(4, m.getContent());
+    ps.setString(5, m.getAttachmentUrl());
+    ps.setString(6, m.getAttachmentType());
+    ps.setString(7, m.getAttachmentName());
+    ps.setObject(8, OffsetDateTime.ofInstant(m.getCreatedAt(), ZoneOffset.UTC));
+    ps.setObject(9, m.getSeq());
+  }
+
+  private static class PendingMessage {
+    private final ChatMessageDTO message;
+    private final long enqueuedAt;
+    private final CompletableFuture<SentMessage> future = new CompletableFuture<>();
+
+    private PendingMessage(ChatMessageDTO message, long enqueuedAt) {
+      this.message = message;
+      this.enqueuedAt = enqueuedAt;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatPartitionProperties;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Service
+public class ChatPartitionMaintenance {
+
+  private static final Logger log = LoggerFactory.getLogger(ChatPartitionMaintenance.class);
+
+  private static final String PARTITION_PREFIX = "chat_messages_p";
+  private static final String LEGACY_PARTITION = "chat_messages_legacy";
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+  @Autowired private ChatPartitionProperties properties;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  public boolean isPartitioned() {
+    List<String> kinds =
+        jdbcTemplate.queryForList(
+            "select relkind::text from pg_class where oid = to_regclass('chat_messages')",
+            String.class);
+    return !kinds.isEmpty() && "p".equals(kinds.get(0));
+  }
+
+  // The conversion itself is db/migration/002-chat-messages-partitioning.sql, run offline; until
+  // it has, there are no partitions to maintain.
+  public void ensurePartitioned() {
+    if (!properties.isEnabled()) return;
+    if (!isPartitioned()) {
+      log.warn(
+          "chat.partitioning.enabled is set but chat_messages is not partitioned;"
+              + " run db/migration/002-chat-messages-partitioning.sql");
+      return;
+    }
+    maintain();
+  }
+
+  @Scheduled(cron = "0 15 3 * * *", zone = "UTC")
+  public void maintain() {
+    if (!properties.isEnabled() || !isPartitioned()) return;
+
+    YearMonth current = YearMonth.now(ZoneOffset.UTC);
+    for (int i = 0; i <= properties.getMonthsAhead(); i++) {
+      createPartition(current.plusMonths(i), current);
+    }
+    if (properties.getRetentionMonths() > 0) {
+      dropPartitionsBefore(current.minusMonths(properties.getRetentionMonths()));
+    }
+  }
+
+  private void createPartition(YearMonth month, YearMonth current) {
+    String name = PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    try {
+      jdbcTemplate.execute(
+          "CREATE TABLE IF NOT EXISTS "
+              + name
+              + " PARTITION OF chat_messages FOR VALUES FROM ('"
+              + monthStart(month)
+              + "') TO ('"
+              + monthStart(month.plusMonths(1))
+              + "')");
+    } catch (DataAccessException e) {
+      // In the month of the migration the current month is still covered by the legacy partition.
+      if (month.equals(current)) log.debug("Skipping partition {}: {}", name, e.getMessage());
+      else log.warn("Could not create partition {}: {}", name, e.getMessage());
+    }
+  }
+
+  private void dropPartitionsBefore(YearMonth cutoff) {
+    List<String> partitions =
+        jdbcTemplate.queryForList(
+            "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid"
+                + " where i.inhparent = 'chat_messages'::regclass and c.relname like ?",
+            String.class,
+            PARTITION_PREFIX + "%");
+    for (String name : partitions) {
+      YearMonth month =
+          YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+      if (!month.isBefore(cutoff)) continue;
+      log.info("Dropping expired chat partition {}", name);
+      jdbcTemplate.execute("ALTER TABLE chat_messages DETACH PARTITION " + name);
+      jdbcTemplate.execute("DROP TABLE " + name);
+    }
+    dropLegacyBefore(cutoff);
+  }
+
+  // The rows from before the conversion sit in one partition bounded by the first monthly one, so
+  // it can only go once that whole range has expired.
+  private void dropLegacyBefore(YearMonth cutoff) {
+    List<Timestamp> bound =
+        jdbcTemplate.queryForList(
+            "select (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz"
+                + " from pg_inherits i join pg_class c on c.oid = i.inhrelid"
+                + " where i.inhparent = 'chat_messages'::regclass and c.relname = ?",
+            Timestamp.class,
+            LEGACY_PARTITION);
+    if (bound.isEmpty() || bound.get(0) == null) return;
+    Instant upper = bound.get(0).toInstant();
+    if (upper.isAfter(cutoff.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant())) return;
+    log.info("Dropping expired chat partition {} (rows before {})", LEGACY_PARTITION, upper);
+    jdbcTemplate.execute("ALTER TABLE chat_messages DETACH PARTITION " + LEGACY_PARTITION);
+    jdbcTemplate.execute("DROP TABLE " + LEGACY_PARTITION);
+  }
+
+  private static String monthStart(YearMonth month) {
+    return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toString();
+  }
+}
@@ -1,48 +1,151 @@
 package com.flow.backend.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.flow.backend.dto.ChatMessageDTO;
-import com.flow.backend.model.ChatMessage;
-import com.flow.backend.model.Friendship;
+import com.flow.backend.dto.ChatMessagePageDTO;
+import com.flow.backend.dto.ChatSyncPageDTO;
+import com.flow.backend.dto.ConversationSummaryDTO;
+import com.flow.backend.dto.MessageCursor;
+import com.flow.backend.dto.UserSnapshot;
 import com.flow.backend.model.User;
-import com.flow.backend.repository.ChatMessageRepository;
 import com.flow.backend.repository.FriendshipRepository;
-import com.flow.backend.util.ChatMessageUtil;
+import com.flow.backend.util.UuidV7;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class ChatService {
 
-  @Autowired private ChatMessageRepository chatMessageRepository;
+  private static final int UNREAD_RECOUNT_LIMIT = 999;
+
+  private static final int MAX_SEQ_RANGE = 500;
+
+  // Larger page requests are served this many messages; the cursor or hasMore covers the rest.
+  private static final int MAX_PAGE_SIZE = 200;
+
+  private static final int MAX_SYNC_WATERMARKS = 2000;
+
+  @Autowired private MessageStore messageStore;
 
   @Autowired private FriendshipRepository friendshipRepository;
 
-  @Autowired private ChatMessageUtil chatMessageUtil;
+  @Autowired private MessageSearchService messageSearchService;
+
+  @Autowired private ChatMessageWriteBehind chatMessageWriteBehind;
+
+  @Autowired private ChatHistoryCache chatHistoryCache;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private ConversationSummaryService conversationSummaryService;
+
+  @Autowired private ConversationMembershipCache conversationMembershipCache;
+
+  @Autowired private MessageDeduplicator messageDeduplicator;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate transactionTemplate;
+
+  @PostConstruct
+  public void init() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+  }
 
   public List<ChatMessageDTO> getRecentMessages(UUID friendshipId, int limit) {
-    Optional<Friendship> fOpt = friendshipRepository.findById(friendshipId);
-    if (fOpt.isEmpty()) throw new IllegalArgumentException("Conversation not found");
-    Friendship f = fOpt.get();
-    var msgs = chatMessageRepository.findByFriendship(f, PageRequest.of(0, limit));
-    return msgs.stream()
-        .map(message -> chatMessageUtil.createChatMessageDTO(message, f))
-        .collect(Collectors.toList());
+    return loadHistory(friendshipId, null, limit);
+  }
+
+  public ChatMessagePageDTO getMessagesBefore(UUID friendshipId, MessageCursor before, int limit) {
+    if (limit < 1) throw new IllegalArgumentException("Limit must be positive");
+    limit = Math.min(limit, MAX_PAGE_SIZE);
+    var msgs = loadHistory(friendshipId, before, limit + 1);
+    boolean hasMore = msgs.size() > limit;
+    List<ChatMessageDTO> out = hasMore ? msgs.subList(0, limit) : msgs;
+    String nextCursor = hasMore ? MessageCursor.of(out.get(out.size() - 1)).encode() : null;
+    return new ChatMessagePageDTO(out, nextCursor);
+  }
+
+  // Catch-up after a reconnect, keyed by the highest seq the client holds per conversation.
+  // Within a conversation seq only becomes visible in commit order (see MessageSequencer), so a
+  // message that commits late is still above the watermark, which a timestamp cursor can pass.
+  // Conversations missing from the map start from the beginning; the returned watermarks are the
+  // ones to send next time, and hasMore asks for another round straight away.
+  public ChatSyncPageDTO sync(User user, Map<UUID, Long> watermarks, int limit) {
+    if (limit < 1) throw new IllegalArgumentException("Limit must be positive");
+    if (watermarks != null && watermarks.size() > MAX_SYNC_WATERMARKS) {
+      throw new IllegalArgumentException(
+          "At most " + MAX_SYNC_WATERMARKS + " conversations can be synced at once");
+    }
+    limit = Math.min(limit, MAX_PAGE_SIZE);
+    Map<UUID, Long> from = new HashMap<>();
+    for (UUID friendshipId : conversationMembershipCache.conversationsOf(user.getId())) {
+      Long seq = watermarks == null ? null : watermarks.get(friendshipId);
+      from.put(friendshipId, seq == null ? 0L : Math.max(seq, 0L));
+    }
+    if (from.isEmpty()) return new ChatSyncPageDTO(List.of(), from, false);
+    var msgs = messageStore.findAfterSeq(from, limit + 1);
+    boolean hasMore = msgs.size() > limit;
+    List<ChatMessageDTO> out = hasMore ? msgs.subList(0, limit) : msgs;
+    for (var m : out) from.merge(m.getFriendshipId(), m.getSeq(), Math::max);
+    return new ChatSyncPageDTO(out, from, hasMore);
+  }
+
+  // Gap fill for clients that noticed a jump in seq: returns whatever exists in the range, so
+  // missing numbers in the result were rolled back and will never appear.
+  public List<ChatMessageDTO> getMessagesBySeq(
+      UUID friendshipId, User user, long fromSeq, long toSeq) {
+    if (fromSeq < 1) throw new IllegalArgumentException("fromSeq must be positive");
+    if (toSeq < fromSeq) throw new IllegalArgumentException("toSeq must not be below fromSeq");
+    if (toSeq - fromSeq >= MAX_SEQ_RANGE) {
+      throw new IllegalArgumentException("Range must not exceed " + MAX_SEQ_RANGE + " messages");
+    }
+    requireParticipant(friendshipId, user);
+    return messageStore.findBySeq(friendshipId, fromSeq, toSeq);
+  }
+
+  private List<ChatMessageDTO> loadHistory(UUID friendshipId, MessageCursor before, int count) {
+    var cached = chatHistoryCache.getBefore(friendshipId, before, count);
+    if (cached.isPresent()) return cached.get();
+
+    requireConversation(friendshipId);
+    if (before == null && chatHistoryCache.isEnabled() && count <= chatHistoryCache.getCapacity()) {
+      int capacity = chatHistoryCache.getCapacity();
+      chatHistoryCache.beginLoad(friendshipId);
+      var recent = messageStore.findBefore(friendshipId, null, capacity);
+      chatHistoryCache.finishLoad(friendshipId, recent, recent.size() < capacity);
+      return recent.size() > count ? recent.subList(0, count) : recent;
+    }
+    return messageStore.findBefore(friendshipId, before, count);
   }
 
   public List<ChatMessageDTO> searchMessages(UUID friendshipId, String q, int limit) {
-    Optional<Friendship> fOpt = friendshipRepository.findById(friendshipId);
-    if (fOpt.isEmpty()) throw new IllegalArgumentException("Conversation not found");
-    Friendship f = fOpt.get();
-    var msgs = chatMessageRepository.searchByFriendshipAndContent(f, q, PageRequest.of(0, limit));
-    return msgs.stream()
-        .map(message -> chatMessageUtil.createChatMessageDTO(message, f))
-        .collect(Collectors.toList());
+    return searchMessages(friendshipId, q, limit, false, false);
+  }
+
+  public List<ChatMessageDTO> searchMessages(
+      UUID friendshipId, String q, int limit, boolean ranked, boolean highlight) {
+    requireConversation(friendshipId);
+    return messageSearchService.search(friendshipId, q, limit, ranked, highlight);
   }
 
   public java.util.Map<String, Object> searchMessagesWithContext(
@@ -51,41 +154,25 @@ public class ChatService {
       int limitMatches,
       int windowBefore,
       int windowAfter,
-      int fetchLimit) {
-    Optional<Friendship> fOpt = friendshipRepository.findById(friendshipId);
-    if (fOpt.isEmpty()) throw new IllegalArgumentException("Conversation not found");
-    Friendship f = fOpt.get();
-
-    var matches =
-        chatMessageRepository.searchByFriendshipAndContent(f, q, PageRequest.of(0, limitMatches));
-
-    var recent = chatMessageRepository.findByFriendship(f, PageRequest.of(0, fetchLimit));
-    java.util.Collections.reverse(recent);
+      boolean ranked,
+      boolean highlight) {
+    var matches = searchMessages(friendshipId, q, limitMatches, ranked, highlight);
 
     java.util.List<java.util.UUID> matchedIds = new java.util.ArrayList<>();
-    for (var m : matches) matchedIds.add(m.getId());
-
-    java.util.Set<Integer> includeIndexes = new java.util.TreeSet<>();
+    java.util.Map<UUID, ChatMessageDTO> window = new java.util.HashMap<>();
     for (var match : matches) {
-      int idx = -1;
-      for (int i = 0; i < recent.size(); i++) {
-        if (recent.get(i).getId().equals(match.getId())) {
-          idx = i;
-          break;
-        }
-      }
-      if (idx == -1) continue;
-      int start = Math.max(0, idx - windowBefore);
-      int end = Math.min(recent.size() - 1, idx + windowAfter);
-      for (int i = start; i <= end; i++) includeIndexes.add(i);
+      matchedIds.add(match.getId());
+      window.put(match.getId(), match);
     }
 
-    java.util.List<ChatMessageDTO> out = new java.util.ArrayList<>();
-    for (int i : includeIndexes) {
-      var m = recent.get(i);
-      out.add(chatMessageUtil.createChatMessageDTO(m, f.getId()));
+    var anchors = matches.stream().map(MessageCursor::of).toList();
+    for (var m : messageStore.findAround(friendshipId, anchors, windowBefore, windowAfter)) {
+      window.putIfAbsent(m.getId(), m);
     }
 
+    java.util.List<ChatMessageDTO> out = new java.util.ArrayList<>(window.values());
+    out.sort(MessageCursor.CHRONOLOGICAL);
+
     java.util.Map<String, Object> result = new java.util.HashMap<>();
     result.put("messages", out);
     result.put("matchesCount", matches.size());
@@ -93,47 +180,168 @@ public class ChatService {
     return result;
   }
 
-  @Transactional
-  public ChatMessageDTO saveMessage(UUID friendshipId, User sender, String content) {
-    Optional<Friendship> fOpt = friendshipRepository.findById(friendshipId);
-    if (fOpt.isEmpty()) throw new IllegalArgumentException("Conversation not found");
-    Friendship f = fOpt.get();
+  public List<ConversationSummaryDTO> getInbox(User user) {
+    return conversationSummaryService.getInbox(user.getId());
+  }
+
+  // The recount is capped; clients show anything at the cap as "999+".
+  public void markRead(UUID friendshipId, User user, MessageCursor upTo) {
+    requireParticipant(friendshipId, user);
+    if (upTo == null) {
+      conversationSummaryService.markRead(friendshipId, user.getId());
+      return;
+    }
+    int unread = 0;
+    for (var m : messageStore.findAfter(friendshipId, upTo, UNREAD_RECOUNT_LIMIT)) {
+      if (!m.getSenderId().equals(user.getId())) unread++;
+    }
+    conversationSummaryService.markRead(friendshipId, user.getId(), upTo, unread);
+  }
+
+  public void requireParticipant(UUID friendshipId, User user) {
+    conversationMembershipCache.requireParticipant(friendshipId, user.getId());
+  }
+
+  // Writes the conversation as newline-delimited JSON, one message per line, oldest first.
+  public void exportMessages(UUID friendshipId, OutputStream out) throws IOException {
+    ObjectWriter writer =
+        objectMapper
+            .writerFor(ChatMessageDTO.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+      gen.setRootValueSeparator(null);
+      messageStore.forEach(
+          friendshipId,
+          m -> {
+            try {
+              writer.writeValue(gen, m);
+              gen.writeRaw('\n');
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void requireConversation(UUID friendshipId) {
+    if (!friendshipRepository.existsById(friendshipId)) {
+      throw new IllegalArgumentException("Conversation not found");
+    }
+  }
+
+  public SentMessage saveMessage(
+      UUID friendshipId, UserSnapshot sender, String content, UUID clientMessageId) {
+    conversationMembershipCache.requireParticipant(friendshipId, sender.getId());
+    ChatMessageDTO draft = draft(friendshipId, sender, content, null, null, null);
+    draft.setClientMessageId(clientMessageId);
+    return persist(draft);
+  }
 
-    if (!f.getUserA().getId().equals(sender.getId())
-        && !f.getUserB().getId().equals(sender.getId())) {
-      throw new IllegalArgumentException("Not participant");
+  // A retried send with the same clientMessageId resolves to the original message, marked as a
+  // duplicate. Every failure, validation included, comes back through the future.
+  public CompletableFuture<SentMessage> saveMessageAsync(
+      UUID friendshipId, UserSnapshot sender, String content, UUID clientMessageId) {
+    try {
+      conversationMembershipCache.requireParticipant(friendshipId, sender.getId());
+      return messageDeduplicator.deduplicate(
+          sender.getId(),
+          clientMessageId,
+          () -> send(friendshipId, sender, content, clientMessageId));
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
     }
-    ChatMessage m = new ChatMessage(f, sender, content);
-    ChatMessage saved = chatMessageRepository.save(m);
-    return chatMessageUtil.createChatMessageDTO(saved, f);
   }
 
-  @Transactional
+  private CompletableFuture<SentMessage> send(
+      UUID friendshipId, UserSnapshot sender, String content, UUID clientMessageId) {
+    // Write-behind batches straight into chat_messages, so it only applies to the JPA store.
+    if (!chatMessageWriteBehind.isEnabled() || !(messageStore instanceof JpaMessageStore)) {
+      return CompletableFuture.completedFuture(
+          saveMessage(friendshipId, sender, content, clientMessageId));
+    }
+
+    ChatMessageDTO dto = draft(friendshipId, sender, content, null, null, null);
+    dto.setId(UuidV7.generate());
+    dto.setCreatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+    dto.setClientMessageId(clientMessageId);
+    return chatMessageWriteBehind
+        .submit(dto)
+        .thenApply(
+            sent -> {
+              if (!sent.duplicate()) chatHistoryCache.append(sent.message());
+              return sent;
+            });
+  }
+
   public ChatMessageDTO saveMessageWithAttachment(
       UUID friendshipId,
-      User sender,
+      UserSnapshot sender,
       String content,
       String attachmentUrl,
       String attachmentType,
       String attachmentName) {
-    Optional<Friendship> fOpt = friendshipRepository.findById(friendshipId);
-    if (fOpt.isEmpty()) throw new IllegalArgumentException("Conversation not found");
-    Friendship f = fOpt.get();
+    conversationMembershipCache.requireParticipant(friendshipId, sender.getId());
+    return persist(
+            draft(
+                friendshipId,
+                sender,
+                content == null ? "" : content,
+                attachmentUrl,
+                attachmentType,
+                attachmentName))
+        .message();
+  }
 
-    if (!f.getUserA().getId().equals(sender.getId())
-        && !f.getUserB().getId().equals(sender.getId())) {
-      throw new IllegalArgumentException("Not participant");
-    }
+  private static ChatMessageDTO draft(
+      UUID friendshipId,
+      UserSnapshot sender,
+      String content,
+      String attachmentUrl,
+      String attachmentType,
+      String attachmentName) {
+    return new ChatMessageDTO(
+        null,
+        friendshipId,
+        sender.getId(),
+        sender.getDisplayName(),
+        sender.getProfilePictureUrl(),
+        content,
+        null,
+        attachmentUrl,
+        attachmentType,
+        attachmentName);
+  }
 
-    ChatMessage m =
-        new ChatMessage(
-            f,
-            sender,
-            content == null ? "" : content,
-            attachmentUrl,
-            attachmentType,
-            attachmentName);
-    ChatMessage saved = chatMessageRepository.save(m);
-    return chatMessageUtil.createChatMessageDTO(saved, f);
+  // The message, its client id claim and its summary row commit together; the history cache only
+  // sees committed messages.
+  private SentMessage persist(ChatMessageDTO draft) {
+    return transactionTemplate.execute(
+        status -> {
+          if (draft.getClientMessageId() != null) {
+            Optional<ChatMessageDTO> original = messageDeduplicator.claim(draft);
+            if (original.isPresent()) return new SentMessage(original.get(), true);
+          }
+          ChatMessageDTO dto = messageStore.append(draft);
+          if (dto.getClientMessageId() != null) messageDeduplicator.recordStored(dto);
+          conversationSummaryService.record(dto);
+          return new SentMessage(cacheAfterCommit(dto), false);
+        });
+  }
+
+  private ChatMessageDTO cacheAfterCommit(ChatMessageDTO dto) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      chatHistoryCache.append(dto);
+      return dto;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            chatHistoryCache.append(dto);
+          }
+        });
+    return dto;
   }
 }
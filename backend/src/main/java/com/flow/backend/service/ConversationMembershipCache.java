@@ -0,0 +1,97 @@
+package com.flow.backend.service;
+
+import com.flow.backend.repository.FriendshipRepository;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Conversation membership in both directions: the participants of each conversation and the
+// conversations of each user. Both are loaded lazily and dropped when friendships change, on
+// every node: invalidations are relayed as peer events.
+@Service
+public class ConversationMembershipCache {
+
+  private static final int MAX_ENTRIES = 100_000;
+
+  private static final String INVALIDATE_EVENT = "membership";
+
+  @Autowired private FriendshipRepository friendshipRepository;
+
+  @Autowired private ChatFanout chatFanout;
+
+  private final ConcurrentHashMap<UUID, List<UUID>> participants = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<UUID, Set<UUID>> conversations = new ConcurrentHashMap<>();
+
+  public void requireParticipant(UUID friendshipId, UUID userId) {
+    List<UUID> users = participants.get(friendshipId);
+    if (users == null) {
+      users =
+          friendshipRepository
+              .findById(friendshipId)
+              .map(f -> List.of(f.getUserA().getId(), f.getUserB().getId()))
+              .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+      // Dropping everything is crude but rare, and the entries reload with one lookup each.
+      if (participants.size() >= MAX_ENTRIES) participants.clear();
+      participants.put(friendshipId, users);
+    }
+    if (!users.contains(userId)) throw new IllegalArgumentException("Not participant");
+  }
+
+  public Set<UUID> conversationsOf(UUID userId) {
+    Set<UUID> ids = conversations.get(userId);
+    if (ids == null) {
+      ids = Set.copyOf(friendshipRepository.findIdsByUserId(userId));
+      if (conversations.size() >= MAX_ENTRIES) conversations.clear();
+      conversations.put(userId, ids);
+    }
+    return ids;
+  }
+
+  public boolean isParticipant(UUID friendshipId, UUID userId) {
+    return conversationsOf(userId).contains(friendshipId);
+  }
+
+  // Drops the entries now and again after the surrounding transaction commits, so a reload that
+  // raced the transaction cannot keep the old membership. Peers drop theirs on commit.
+  public void invalidate(UUID friendshipId, UUID... userIds) {
+    Runnable drop = () -> drop(friendshipId, List.of(userIds));
+    drop.run();
+    StringBuilder data = new StringBuilder(friendshipId == null ? "-" : friendshipId.toString());
+    for (UUID userId : userIds) data.append(' ').append(userId);
+    chatFanout.publishEvent(INVALIDATE_EVENT, data.toString());
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              drop.run();
+            }
+          });
+    }
+  }
+
+  @EventListener
+  public void onPeerEvent(ChatFanout.PeerEvent event) {
+    if (ChatFanout.PeerEvent.RESYNC.equals(event.type())) {
+      participants.clear();
+      conversations.clear();
+    } else if (INVALIDATE_EVENT.equals(event.type())) {
+      String[] ids = event.data().split(" ");
+      UUID friendshipId = ids[0].equals("-") ? null : UUID.fromString(ids[0]);
+      List<UUID> userIds = Arrays.stream(ids).skip(1).map(UUID::fromString).toList();
+      drop(friendshipId, userIds);
+    }
+  }
+
+  private void drop(UUID friendshipId, List<UUID> userIds) {
+    if (friendshipId != null) participants.remove(friendshipId);
+    for (UUID userId : userIds) conversations.remove(userId);
+  }
+}
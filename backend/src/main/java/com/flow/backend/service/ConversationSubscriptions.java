@@ -0,0 +1,128 @@
+package com.flow.backend.service;
+
+import com.flow.backend.repository.FriendshipRepository;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+// This node's subscriptions to conversation topics, so that ending a friendship can take them
+// away from sessions that subscribed while the two were still friends. Revocations are relayed to
+// the other nodes as peer events.
+@Service
+public class ConversationSubscriptions {
+
+  private static final String REVOKE_EVENT = "revoke";
+
+  // Lazy: the broker channel belongs to the message broker configuration, which depends on the
+  // interceptor that records subscriptions here.
+  @Autowired
+  @Lazy
+  @Qualifier("brokerChannel")
+  private MessageChannel brokerChannel;
+
+  @Autowired private FriendshipRepository friendshipRepository;
+
+  @Autowired private ChatFanout chatFanout;
+
+  private final ConcurrentHashMap<UUID, Set<Subscription>> byConversation =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Map<String, UUID>> bySession = new ConcurrentHashMap<>();
+
+  public void add(String sessionId, String subscriptionId, UUID friendshipId) {
+    bySession
+        .computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+        .put(subscriptionId, friendshipId);
+    byConversation
+        .computeIfAbsent(friendshipId, id -> ConcurrentHashMap.newKeySet())
+        .add(new Subscription(sessionId, subscriptionId));
+  }
+
+  public void remove(String sessionId, String subscriptionId) {
+    Map<String, UUID> subscriptions = bySession.get(sessionId);
+    UUID friendshipId = subscriptions == null ? null : subscriptions.remove(subscriptionId);
+    if (friendshipId != null) forget(friendshipId, new Subscription(sessionId, subscriptionId));
+  }
+
+  // Unsubscribes every session of this node from the conversation's topics, after the surrounding
+  // transaction commits. Before then a SUBSCRIBE still finds the friendship row and would pass
+  // the participant check again; callers invalidate ConversationMembershipCache first, so its
+  // post-commit pass has already run by the time the subscriptions go.
+  public void revoke(UUID friendshipId) {
+    chatFanout.publishEvent(REVOKE_EVENT, friendshipId.toString());
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              unsubscribeAll(friendshipId);
+            }
+          });
+    } else {
+      unsubscribeAll(friendshipId);
+    }
+  }
+
+  private void unsubscribeAll(UUID friendshipId) {
+    Set<Subscription> subscriptions = byConversation.remove(friendshipId);
+    if (subscriptions == null) return;
+    for (Subscription s : subscriptions) {
+      Map<String, UUID> ofSession = bySession.get(s.sessionId());
+      if (ofSession != null) ofSession.remove(s.subscriptionId());
+      SimpMessageHeaderAccessor headers =
+          SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+      headers.setSessionId(s.sessionId());
+      headers.setSubscriptionId(s.subscriptionId());
+      brokerChannel.send(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+    }
+  }
+
+  // After a resync, revokes that may have been missed are found by checking which subscribed
+  // conversations still exist; a conversation's participants never change.
+  @EventListener
+  public void onPeerEvent(ChatFanout.PeerEvent event) {
+    if (REVOKE_EVENT.equals(event.type())) {
+      unsubscribeAll(UUID.fromString(event.data()));
+    } else if (ChatFanout.PeerEvent.RESYNC.equals(event.type())) {
+      Set<UUID> subscribed = Set.copyOf(byConversation.keySet());
+      if (subscribed.isEmpty()) return;
+      Set<UUID> live = new HashSet<>(friendshipRepository.findIdsByIdIn(subscribed));
+      for (UUID friendshipId : subscribed) {
+        if (!live.contains(friendshipId)) unsubscribeAll(friendshipId);
+      }
+    }
+  }
+
+  @EventListener
+  public void onDisconnect(SessionDisconnectEvent event) {
+    Map<String, UUID> subscriptions = bySession.remove(event.getSessionId());
+    if (subscriptions == null) return;
+    subscriptions.forEach(
+        (subscriptionId, friendshipId) ->
+            forget(friendshipId, new Subscription(event.getSessionId(), subscriptionId)));
+  }
+
+  private void forget(UUID friendshipId, Subscription subscription) {
+    byConversation.computeIfPresent(
+        friendshipId,
+        (id, subscriptions) -> {
+          subscriptions.remove(subscription);
+          return subscriptions.isEmpty() ? null : subscriptions;
+        });
+  }
+
+  private record Subscription(String sessionId, String subscriptionId) {}
+}
@@ -0,0 +1,188 @@
+package com.flow.backend.service;
+
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.ConversationSummaryDTO;
+import com.flow.backend.dto.MessageCursor;
+import com.flow.backend.repository.ConversationSummaryRepository;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+@Service
+public class ConversationSummaryService {
+
+  private static final int SNIPPET_LENGTH = 200;
+
+  // Only a message newer than the current preview replaces it, so write-behind batches that
+  // commit out of order cannot move the preview backwards.
+  private static final String NEWER =
+      "(conversation_summaries.last_message_at is null"
+          + " or (excluded.last_message_at, excluded.last_message_id)"
+          + " > (conversation_summaries.last_message_at, conversation_summaries.last_message_id))";
+
+  private static final String PARTICIPANTS =
+      " from friendships f cross join lateral (values (f.user_a_id), (f.user_b_id)) p(user_id)";
+
+  private static final String RECORD_SQL =
+      "insert into conversation_summaries (id, friendship_id, user_id, last_message_id,"
+          + " last_message_sender_id, last_message_snippet, last_message_at, unread_count,"
+          + " updated_at)"
+          + " select gen_random_uuid(), f.id, p.user_id, ?, ?, ?, ?,"
+          + " case when p.user_id = ? then 0 else 1 end, now()"
+          + PARTICIPANTS
+          + " where f.id = ?"
+          + " on conflict (friendship_id, user_id) do update set"
+          + " unread_count = conversation_summaries.unread_count + excluded.unread_count,"
+          + latest("last_message_id")
+          + ","
+          + latest("last_message_sender_id")
+          + ","
+          + latest("last_message_snippet")
+          + ","
+          + latest("last_message_at")
+          + ", updated_at = now()";
+
+  private static final String ENSURE_SQL =
+      "insert into conversation_summaries (id, friendship_id, user_id, unread_count, updated_at)"
+          + " select gen_random_uuid(), f.id, p.user_id, 0, now()"
+          + PARTICIPANTS
+          + " where f.id = ?"
+          + " on conflict (friendship_id, user_id) do nothing";
+
+  // Seeds rows for conversations that predate the table, with the newest message as preview.
+  private static final String BACKFILL_SQL =
+      "insert into conversation_summaries (id, friendship_id, user_id, last_message_id,"
+          + " last_message_sender_id, last_message_snippet, last_message_at, unread_count,"
+          + " updated_at)"
+          + " select gen_random_uuid(), f.id, p.user_id, m.id, m.sender_id,"
+          + " left(m.content, "
+          + SNIPPET_LENGTH
+          + "), m.created_at, 0, now()"
+          + PARTICIPANTS
+          + " left join lateral (select id, sender_id, content, created_at from chat_messages"
+          + " where friendship_id = f.id order by created_at desc, id desc limit 1) m on true"
+          + " where f.deleted_at is null"
+          + " on conflict (friendship_id, user_id) do nothing";
+
+  // Preview for rows seeded by ensureRows when the messages live outside chat_messages.
+  private static final String SEED_PREVIEW_SQL =
+      "update conversation_summaries set last_message_id = ?, last_message_sender_id = ?,"
+          + " last_message_snippet = ?, last_message_at = ?, updated_at = now()"
+          + " where friendship_id = ? and last_message_at is null";
+
+  @Autowired private ConversationSummaryRepository conversationSummaryRepository;
+
+  @Autowired private MessageStore messageStore;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  private static String latest(String column) {
+    return " "
+        + column
+        + " = case when "
+        + NEWER
+        + " then excluded."
+        + column
+        + " else conversation_summaries."
+        + column
+        + " end";
+  }
+
+  public List<ConversationSummaryDTO> getInbox(UUID userId) {
+    return conversationSummaryRepository.findInbox(userId);
+  }
+
+  public void record(ChatMessageDTO message) {
+    jdbcTemplate.update(RECORD_SQL, ps -> bind(ps, message));
+  }
+
+  public void recordAll(List<ChatMessageDTO> messages) {
+    // A fixed row order keeps concurrent batches from deadlocking on the same summary rows.
+    List<ChatMessageDTO> sorted = new ArrayList<>(messages);
+    sorted.sort(Comparator.comparing(ChatMessageDTO::getFriendshipId));
+    jdbcTemplate.batchUpdate(RECORD_SQL, sorted, sorted.size(), this::bind);
+  }
+
+  public void ensureRows(UUID friendshipId) {
+    jdbcTemplate.update(ENSURE_SQL, friendshipId);
+  }
+
+  public void backfill() {
+    if (messageStore instanceof JpaMessageStore) {
+      jdbcTemplate.update(BACKFILL_SQL);
+      return;
+    }
+    List<UUID> missing =
+        jdbcTemplate.queryForList(
+            "select f.id from friendships f where f.deleted_at is null and not exists"
+                + " (select 1 from conversation_summaries s where s.friendship_id = f.id)",
+            UUID.class);
+    for (UUID friendshipId : missing) {
+      ensureRows(friendshipId);
+      for (ChatMessageDTO m : messageStore.findBefore(friendshipId, null, 1)) {
+        jdbcTemplate.update(
+            SEED_PREVIEW_SQL,
+            m.getId(),
+            m.getSenderId(),
+            snippet(m.getContent()),
+            OffsetDateTime.ofInstant(m.getCreatedAt(), ZoneOffset.UTC),
+            friendshipId);
+      }
+    }
+  }
+
+  public void markRead(UUID friendshipId, UUID userId) {
+    jdbcTemplate.update(
+        "update conversation_summaries set unread_count = 0,"
+            + " last_read_message_id = last_message_id, last_read_at = last_message_at,"
+            + " updated_at = now() where friendship_id = ? and user_id = ?",
+        friendshipId,
+        userId);
+  }
+
+  // Moves the read marker forward to upTo; unread is the number of messages from the other
+  // participant after it.
+  public void markRead(UUID friendshipId, UUID userId, MessageCursor upTo, int unread) {
+    OffsetDateTime at = OffsetDateTime.ofInstant(upTo.getCreatedAt(), ZoneOffset.UTC);
+    jdbcTemplate.update(
+        "update conversation_summaries set unread_count = ?, last_read_message_id = ?,"
+            + " last_read_at = ?, updated_at = now() where friendship_id = ? and user_id = ?"
+            + " and (last_read_at is null or (cast(? as timestamptz), cast(? as uuid))"
+            + " > (last_read_at, last_read_message_id))",
+        unread,
+        upTo.getId(),
+        at,
+        friendshipId,
+        userId,
+        at,
+        upTo.getId());
+  }
+
+  public void deleteByFriendshipId(UUID friendshipId) {
+    jdbcTemplate.update("delete from conversation_summaries where friendship_id = ?", friendshipId);
+  }
+
+  private void bind(PreparedStatement ps, ChatMessageDTO m) throws SQLException {
+    ps.setObject(1, m.getId());
+    ps.setObject(2, m.getSenderId());
+    ps.setString(3, snippet(m.getContent()));
+    ps.setObject(4, OffsetDateTime.ofInstant(m.getCreatedAt(), ZoneOffset.UTC));
+    ps.setObject(5, m.getSenderId());
+    ps.setObject(6, m.getFriendshipId());
+  }
+
+  private static String snippet(String content) {
+    if (content == null || content.length() <= SNIPPET_LENGTH) return content;
+    int end = SNIPPET_LENGTH;
+    if (Character.isHighSurrogate(content.charAt(end - 1))) end--;
+    return content.substring(0, end);
+  }
+}
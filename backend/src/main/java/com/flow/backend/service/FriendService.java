@@ -23,12 +23,20 @@ public class FriendService {
 
   @Autowired private FriendshipRepository friendshipRepository;
 
-  @Autowired private com.flow.backend.repository.ChatMessageRepository chatMessageRepository;
+  @Autowired private MessagePurgeService messagePurgeService;
+
+  @Autowired private ConversationSummaryService conversationSummaryService;
 
   @Autowired private UserService userService;
 
   @Autowired private UserDisplayUtil userDisplayUtil;
 
+  @Autowired private ChatHistoryCache chatHistoryCache;
+
+  @Autowired private ConversationMembershipCache conversationMembershipCache;
+
+  @Autowired private ConversationSubscriptions conversationSubscriptions;
+
   public List<FriendRequestDTO> getIncomingRequests(User recipient) {
     List<FriendRequest> reqs =
         friendRequestRepository.findByRecipientAndStatus(recipient, "PENDING");
@@ -86,7 +94,10 @@ public class FriendService {
     fr.setStatus("ACCEPTED");
     friendRequestRepository.save(fr);
     Friendship f = new Friendship(fr.getRequester(), fr.getRecipient());
-    friendshipRepository.save(f);
+    friendshipRepository.saveAndFlush(f);
+    conversationSummaryService.ensureRows(f.getId());
+    conversationMembershipCache.invalidate(
+        null, fr.getRequester().getId(), fr.getRecipient().getId());
   }
 
   @Transactional
@@ -158,8 +169,13 @@ public class FriendService {
     var maybe = friendshipRepository.findBetween(requester, friend);
     if (maybe.isEmpty()) throw new IllegalArgumentException("Friendship not found");
     var friendship = maybe.get();
-    chatMessageRepository.deleteByFriendshipId(friendship.getId());
-    friendshipRepository.delete(friendship);
+    friendship.setDeletedAt(java.time.LocalDateTime.now());
+    friendshipRepository.save(friendship);
+    chatHistoryCache.invalidate(friendship.getId());
+    conversationMembershipCache.invalidate(
+        friendship.getId(), friendship.getUserA().getId(), friendship.getUserB().getId());
+    conversationSubscriptions.revoke(friendship.getId());
+    messagePurgeService.schedule(friendship.getId(), null);
   }
 
   public java.util.Optional<java.util.UUID> getFriendshipIdBetween(
@@ -0,0 +1,129 @@
+package com.flow.backend.service;
+
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.MessageCursor;
+import com.flow.backend.model.ChatMessage;
+import com.flow.backend.repository.ChatMessageRepository;
+import com.flow.backend.repository.FriendshipRepository;
+import com.flow.backend.repository.UserRepository;
+import com.flow.backend.util.ChatMessageUtil;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@ConditionalOnProperty(name = "chat.store.engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaMessageStore implements MessageStore {
+
+  private static final int FOR_EACH_PAGE = 500;
+
+  @Autowired private ChatMessageRepository chatMessageRepository;
+
+  @Autowired private FriendshipRepository friendshipRepository;
+
+  @Autowired private UserRepository userRepository;
+
+  @Autowired private MessageSequencer messageSequencer;
+
+  @Autowired private ChatMessageUtil chatMessageUtil;
+
+  // The seq increment and the insert must commit together, also when the caller has no
+  // transaction of its own. References keep the insert from loading the friendship and sender.
+  @Override
+  @Transactional
+  public ChatMessageDTO append(ChatMessageDTO message) {
+    ChatMessage entity =
+        new ChatMessage(
+            friendshipRepository.getReferenceById(message.getFriendshipId()),
+            userRepository.getReferenceById(message.getSenderId()),
+            message.getContent(),
+            message.getAttachmentUrl(),
+            message.getAttachmentType(),
+            message.getAttachmentName());
+    entity.setSeq(messageSequencer.next(message.getFriendshipId()));
+    chatMessageRepository.save(entity);
+    message.setId(entity.getId());
+    message.setCreatedAt(entity.getCreatedAt());
+    message.setSeq(entity.getSeq());
+    return message;
+  }
+
+  @Override
+  public Optional<ChatMessageDTO> find(UUID friendshipId, MessageCursor at) {
+    return chatMessageRepository.findDTOByFriendshipIdAndPosition(
+        friendshipId, at.getCreatedAt(), at.getId());
+  }
+
+  @Override
+  public List<ChatMessageDTO> findBefore(UUID friendshipId, MessageCursor before, int limit) {
+    return before == null
+        ? chatMessageRepository.findDTOsByFriendshipId(friendshipId, PageRequest.of(0, limit))
+        : chatMessageRepository.findDTOsByFriendshipIdBefore(
+            friendshipId, before.getCreatedAt(), before.getId(), PageRequest.of(0, limit));
+  }
+
+  @Override
+  public List<ChatMessageDTO> findAfter(UUID friendshipId, MessageCursor after, int limit) {
+    return chatMessageRepository.findDTOsByFriendshipIdAfter(
+        friendshipId, after.getCreatedAt(), after.getId(), PageRequest.of(0, limit));
+  }
+
+  @Override
+  public List<ChatMessageDTO> findAfterSeq(Map<UUID, Long> watermarks, int limit) {
+    if (watermarks.isEmpty()) return List.of();
+    UUID[] friendshipIds = new UUID[watermarks.size()];
+    Long[] seqs = new Long[watermarks.size()];
+    int i = 0;
+    for (var entry : watermarks.entrySet()) {
+      friendshipIds[i] = entry.getKey();
+      seqs[i++] = entry.getValue();
+    }
+    return chatMessageRepository.findRowsAfterSeq(friendshipIds, seqs, limit).stream()
+        .map(chatMessageUtil::createChatMessageDTO)
+        .toList();
+  }
+
+  @Override
+  public List<ChatMessageDTO> findAround(
+      UUID friendshipId, Collection<MessageCursor> anchors, int before, int after) {
+    if (anchors.isEmpty()) return List.of();
+    List<UUID> ids = anchors.stream().map(MessageCursor::getId).toList();
+    return chatMessageRepository
+        .findRowsAround(friendshipId, ids, Math.max(0, before), Math.max(0, after))
+        .stream()
+        .map(chatMessageUtil::createChatMessageDTO)
+        .toList();
+  }
+
+  @Override
+  public List<ChatMessageDTO> findBySeq(UUID friendshipId, long fromSeq, long toSeq) {
+    return chatMessageRepository.findDTOsByFriendshipIdAndSeqBetween(friendshipId, fromSeq, toSeq);
+  }
+
+  // Keyset pages, each read on its own, so however slowly the caller consumes them no
+  // transaction or snapshot stays open for the length of the walk.
+  @Override
+  public void forEach(UUID friendshipId, Consumer<ChatMessageDTO> action) {
+    List<ChatMessageDTO> page =
+        chatMessageRepository.findOldestDTOsByFriendshipId(
+            friendshipId, PageRequest.of(0, FOR_EACH_PAGE));
+    while (true) {
+      page.forEach(action);
+      if (page.size() < FOR_EACH_PAGE) return;
+      page = findAfter(friendshipId, MessageCursor.of(page.get(page.size() - 1)), FOR_EACH_PAGE);
+    }
+  }
+
+  @Override
+  public int deleteBatch(UUID friendshipId, int limit) {
+    return chatMessageRepository.deleteBatchByFriendshipId(friendshipId, limit);
+  }
+}
@@ -0,0 +1,114 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatFanoutProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+// In-JVM stand-in for a relay, for running the cluster code path on one machine: relayed
+// broadcasts are encoded as envelopes, cross a queue and a thread, and are delivered back as if a
+// peer node had sent them. Nothing reaches local sessions without making that hop. Peer events
+// come back to this node's own listeners the same way, after the surrounding transaction commits.
+@Service
+@Primary
+@ConditionalOnProperty(name = "chat.fanout.mode", havingValue = "loopback")
+public class LoopbackChatFanout implements ChatFanout {
+
+  private static final Logger log = LoggerFactory.getLogger(LoopbackChatFanout.class);
+
+  private static final String NODE = "loopback";
+
+  @Autowired private ChatFanoutProperties properties;
+
+  @Autowired private LocalChatFanout localChatFanout;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private ApplicationEventPublisher eventPublisher;
+
+  private BlockingQueue<String> wire;
+  private Thread receiver;
+  private volatile boolean running;
+
+  private Counter published;
+  private Counter received;
+  private Counter dropped;
+
+  @PostConstruct
+  public void start() {
+    wire = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    published = meterRegistry.counter("chat.fanout.published");
+    received = meterRegistry.counter("chat.fanout.received");
+    dropped = meterRegistry.counter("chat.fanout.dropped");
+    meterRegistry.gauge("chat.fanout.queue.depth", wire, BlockingQueue::size);
+
+    running = true;
+    receiver = new Thread(this::receiveLoop, "chat-fanout-loopback");
+    receiver.setDaemon(true);
+    receiver.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    receiver.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  @Override
+  public void publishEvent(String type, String data) {
+    String encoded = new Envelope(NODE, EVENT_PREFIX + type, data).encode();
+    ChatFanout.afterCommit(() -> enqueue(encoded));
+  }
+
+  @Override
+  public boolean hasPeers() {
+    return true;
+  }
+
+  @Override
+  public void publish(String destination, byte[] payload) {
+    if (!destination.startsWith(RELAYED_PREFIX)) {
+      localChatFanout.publish(destination, payload);
+      return;
+    }
+    enqueue(Envelope.of(NODE, destination, payload).encode());
+  }
+
+  private void enqueue(String encoded) {
+    if (wire.offer(encoded)) published.increment();
+    else dropped.increment();
+  }
+
+  private void receiveLoop() {
+    while (running || !wire.isEmpty()) {
+      try {
+        String next = wire.poll(properties.getListenTimeoutMs(), TimeUnit.MILLISECONDS);
+        if (next == null) continue;
+        Envelope envelope = Envelope.decode(next);
+        received.increment();
+        if (envelope.destination().startsWith(EVENT_PREFIX)) {
+          eventPublisher.publishEvent(
+              new PeerEvent(NODE, envelope.destination().substring(1), envelope.payload()));
+        } else {
+          localChatFanout.publish(envelope.destination(), envelope.payloadBytes());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.warn("Dropping relayed broadcast: {}", e.getMessage());
+      }
+    }
+  }
+}
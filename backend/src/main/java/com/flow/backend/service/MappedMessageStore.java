@@ -0,0 +1,445 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatFanoutProperties;
+import com.flow.backend.config.ChatPartitionProperties;
+import com.flow.backend.config.ChatStoreProperties;
+import com.flow.backend.config.ChatWriteBehindProperties;
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.MessageCursor;
+import com.flow.backend.util.UuidV7;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import sun.misc.Unsafe;
+
+// Append-only log per conversation, split into fixed-size memory-mapped segment files. Messages
+// are appended in (createdAt, id) order, so an in-memory offset index can be binary searched by
+// cursor and records are decoded straight from slices of the mapped segments.
+@Service
+@ConditionalOnProperty(name = "chat.store.engine", havingValue = "mmap")
+public class MappedMessageStore implements MessageStore {
+
+  // Record layout: int length (written last, so 0 marks the end of a segment), id, createdAt in
+  // epoch micros, sender id, then six length-prefixed UTF-8 strings with -1 for null.
+  private static final int ID_OFFSET = 4;
+  private static final int CREATED_AT_OFFSET = 20;
+  private static final int SENDER_OFFSET = 28;
+  private static final int STRINGS_OFFSET = 44;
+
+  private static final Unsafe UNSAFE = unsafe();
+
+  @Autowired private ChatStoreProperties properties;
+
+  @Autowired private ChatFanoutProperties fanoutProperties;
+
+  @Autowired private ChatWriteBehindProperties writeBehindProperties;
+
+  @Autowired private ChatPartitionProperties partitionProperties;
+
+  private final ConcurrentHashMap<UUID, ConversationLog> logs = new ConcurrentHashMap<>();
+
+  private Path directory;
+
+  @PostConstruct
+  public void init() throws IOException {
+    // Features that read or write chat_messages directly, or need another node to read this one's
+    // messages, would silently see no history.
+    if (!"local".equals(fanoutProperties.getMode())) {
+      throw new IllegalStateException(
+          "chat.store.engine=mmap is node-local and requires chat.fanout.mode=local");
+    }
+    if (writeBehindProperties.isEnabled()) {
+      throw new IllegalStateException(
+          "chat.store.engine=mmap does not support chat.persistence.write-behind.enabled");
+    }
+    if (partitionProperties.isEnabled()) {
+      throw new IllegalStateException(
+          "chat.store.engine=mmap does not support chat.partitioning.enabled");
+    }
+    directory = Path.of(properties.getMmap().getDirectory());
+    Files.createDirectories(directory);
+  }
+
+  @Override
+  public ChatMessageDTO append(ChatMessageDTO message) {
+    return withLog(message.getFriendshipId(), log -> log.append(message));
+  }
+
+  @Override
+  public Optional<ChatMessageDTO> find(UUID friendshipId, MessageCursor at) {
+    return withLog(friendshipId, log -> log.find(at));
+  }
+
+  @Override
+  public List<ChatMessageDTO> findBefore(UUID friendshipId, MessageCursor before, int limit) {
+    return withLog(friendshipId, log -> log.findBefore(before, limit));
+  }
+
+  @Override
+  public List<ChatMessageDTO> findAfter(UUID friendshipId, MessageCursor after, int limit) {
+    return withLog(friendshipId, log -> log.findAfter(after, limit));
+  }
+
+  @Override
+  public List<ChatMessageDTO> findBySeq(UUID friendshipId, long fromSeq, long toSeq) {
+    return withLog(friendshipId, log -> log.findBySeq(fromSeq, toSeq));
+  }
+
+  @Override
+  public List<ChatMessageDTO> findAround(
+      UUID friendshipId, Collection<MessageCursor> anchors, int before, int after) {
+    Map<UUID, ChatMessageDTO> window = new HashMap<>();
+    for (MessageCursor anchor : anchors) {
+      if (before > 0)
+        findBefore(friendshipId, anchor, before).forEach(m -> window.put(m.getId(), m));
+      if (after > 0) findAfter(friendshipId, anchor, after).forEach(m -> window.put(m.getId(), m));
+    }
+    List<ChatMessageDTO> out = new ArrayList<>(window.values());
+    out.sort(MessageCursor.CHRONOLOGICAL);
+    return out;
+  }
+
+  @Override
+  public List<ChatMessageDTO> findAfterSeq(Map<UUID, Long> watermarks, int limit) {
+    List<UUID> friendshipIds = new ArrayList<>(watermarks.keySet());
+    friendshipIds.sort(Comparator.comparing(UUID::toString));
+    List<ChatMessageDTO> out = new ArrayList<>();
+    for (UUID friendshipId : friendshipIds) {
+      if (out.size() >= limit) break;
+      if (!Files.isDirectory(directory.resolve(friendshipId.toString()))) continue;
+      long from = watermarks.get(friendshipId) + 1;
+      out.addAll(findBySeq(friendshipId, from, from + limit - out.size() - 1));
+    }
+    return out;
+  }
+
+  // Walks the log in pages so appends are only blocked for one page at a time.
+  @Override
+  public void forEach(UUID friendshipId, Consumer<ChatMessageDTO> action) {
+    MessageCursor after = null;
+    while (true) {
+      MessageCursor from = after;
+      List<ChatMessageDTO> page = withLog(friendshipId, log -> log.findAfter(from, 500));
+      page.forEach(action);
+      if (page.size() < 500) return;
+      after = MessageCursor.of(page.get(page.size() - 1));
+    }
+  }
+
+  // Segment files are removed in one step regardless of limit.
+  @Override
+  public int deleteBatch(UUID friendshipId, int limit) {
+    ConversationLog log = logs.remove(friendshipId);
+    int deleted = 0;
+    if (log != null) {
+      synchronized (log) {
+        deleted = log.count;
+        log.close();
+      }
+    }
+    Path dir = directory.resolve(friendshipId.toString());
+    if (!Files.exists(dir)) return deleted;
+    try (Stream<Path> files = Files.walk(dir)) {
+      for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return deleted;
+  }
+
+  @Scheduled(fixedDelay = 60, timeUnit = TimeUnit.SECONDS)
+  public void closeIdle() {
+    long cutoff =
+        System.nanoTime() - TimeUnit.SECONDS.toNanos(properties.getMmap().getIdleTimeoutSeconds());
+    for (Map.Entry<UUID, ConversationLog> e : logs.entrySet()) {
+      ConversationLog log = e.getValue();
+      if (log.lastAccess - cutoff < 0 && logs.remove(e.getKey(), log)) {
+        synchronized (log) {
+          log.close();
+        }
+      }
+    }
+  }
+
+  private <T> T withLog(UUID friendshipId, Function<ConversationLog, T> action) {
+    while (true) {
+      ConversationLog log =
+          logs.computeIfAbsent(
+              friendshipId, id -> new ConversationLog(id, directory.resolve(id.toString())));
+      synchronized (log) {
+        // Lost a race with closeIdle or a delete; open a fresh view of the files.
+        if (log.closed) continue;
+        log.lastAccess = System.nanoTime();
+        return action.apply(log);
+      }
+    }
+  }
+
+  private static long toMicros(Instant instant) {
+    return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+  }
+
+  private static Instant fromMicros(long micros) {
+    return Instant.ofEpochSecond(
+        Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+  }
+
+  // Releases the mapping now rather than whenever the GC collects the buffer, which for an idle
+  // conversation may be never. Touching the buffer or any slice of it afterwards crashes the JVM.
+  private static void unmap(MappedByteBuffer buffer) {
+    UNSAFE.invokeCleaner(buffer);
+  }
+
+  private static Unsafe unsafe() {
+    try {
+      Field field = Unsafe.class.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return (Unsafe) field.get(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot unmap segment files", e);
+    }
+  }
+
+  private static String getString(ByteBuffer record, int pos) {
+    int length = record.getInt(pos);
+    if (length < 0) return null;
+    return StandardCharsets.UTF_8.decode(record.slice(pos + 4, length)).toString();
+  }
+
+  private static int putString(ByteBuffer segment, int pos, byte[] value) {
+    if (value == null) {
+      segment.putInt(pos, -1);
+      return pos + 4;
+    }
+    segment.putInt(pos, value.length);
+    segment.put(pos + 4, value);
+    return pos + 4 + value.length;
+  }
+
+  private static byte[] bytes(String value) {
+    return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private final class ConversationLog {
+    private final UUID friendshipId;
+    private final Path dir;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    // Each entry is segment << 32 | position of one record, in log order; a record's seq is its
+    // position in the index plus one.
+    private long[] index = new long[64];
+    private int count;
+    private int tail;
+    private long lastMicros;
+    private boolean closed;
+    private volatile long lastAccess = System.nanoTime();
+
+    private ConversationLog(UUID friendshipId, Path dir) {
+      this.friendshipId = friendshipId;
+      this.dir = dir;
+      if (Files.isDirectory(dir)) recover();
+    }
+
+    private void recover() {
+      try (Stream<Path> files = Files.list(dir)) {
+        for (Path file : files.sorted().toList()) {
+          // A file keeps the size it was created with, whatever segment-bytes says now.
+          long size = Files.size(file);
+          MappedByteBuffer segment =
+              map(file, size > 0 ? size : properties.getMmap().getSegmentBytes());
+          int s = segments.size();
+          segments.add(segment);
+          int pos = 0;
+          while (pos + 4 <= segment.capacity()) {
+            int length = segment.getInt(pos);
+            if (length <= 0 || pos + length > segment.capacity()) break;
+            addToIndex(s, pos);
+            lastMicros = segment.getLong(pos + CREATED_AT_OFFSET);
+            pos += length;
+          }
+          tail = pos;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private MappedByteBuffer map(Path file, long size) throws IOException {
+      try (FileChannel channel =
+          FileChannel.open(
+              file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    }
+
+    private void addToIndex(int segment, int pos) {
+      if (count == index.length) index = Arrays.copyOf(index, count * 2);
+      index[count++] = ((long) segment << 32) | pos;
+    }
+
+    private ByteBuffer record(int i) {
+      ByteBuffer segment = segments.get((int) (index[i] >>> 32));
+      int pos = (int) index[i];
+      return segment.slice(pos, segment.getInt(pos));
+    }
+
+    private ChatMessageDTO append(ChatMessageDTO dto) {
+      // Keeping createdAt and the v7 id monotonic keeps the log sorted by the keyset order.
+      long micros = Math.max(toMicros(Instant.now()), lastMicros);
+      dto.setId(UuidV7.generate());
+      dto.setCreatedAt(fromMicros(micros));
+      dto.setSeq((long) count + 1);
+
+      byte[][] strings = {
+        bytes(dto.getSenderName()),
+        bytes(dto.getSenderPicture()),
+        bytes(dto.getContent()),
+        bytes(dto.getAttachmentUrl()),
+        bytes(dto.getAttachmentType()),
+        bytes(dto.getAttachmentName())
+      };
+      int length = STRINGS_OFFSET;
+      for (byte[] s : strings) length += 4 + (s == null ? 0 : s.length);
+      int segmentBytes = properties.getMmap().getSegmentBytes();
+      if (length > segmentBytes) throw new IllegalArgumentException("Message too large");
+
+      try {
+        if (segments.isEmpty() || tail + length > segments.get(segments.size() - 1).capacity()) {
+          Files.createDirectories(dir);
+          segments.add(map(dir.resolve(String.format("%08d.seg", segments.size())), segmentBytes));
+          tail = 0;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      MappedByteBuffer segment = segments.get(segments.size() - 1);
+      int pos = tail;
+      segment.putLong(pos + ID_OFFSET, dto.getId().getMostSignificantBits());
+      segment.putLong(pos + ID_OFFSET + 8, dto.getId().getLeastSignificantBits());
+      segment.putLong(pos + CREATED_AT_OFFSET, micros);
+      segment.putLong(pos + SENDER_OFFSET, dto.getSenderId().getMostSignificantBits());
+      segment.putLong(pos + SENDER_OFFSET + 8, dto.getSenderId().getLeastSignificantBits());
+      int p = pos + STRINGS_OFFSET;
+      for (byte[] s : strings) p = putString(segment, p, s);
+      segment.putInt(pos, length);
+      if (properties.getMmap().isForceWrites()) segment.force(pos, length);
+
+      addToIndex(segments.size() - 1, pos);
+      tail = pos + length;
+      lastMicros = micros;
+      return dto;
+    }
+
+    private Optional<ChatMessageDTO> find(MessageCursor at) {
+      int i = firstAtOrAfter(at, false);
+      if (i == count || compare(record(i), toMicros(at.getCreatedAt()), at.getId()) != 0) {
+        return Optional.empty();
+      }
+      return Optional.of(decode(i));
+    }
+
+    private List<ChatMessageDTO> findBefore(MessageCursor before, int limit) {
+      int end = before == null ? count : firstAtOrAfter(before, false);
+      List<ChatMessageDTO> out = new ArrayList<>(Math.min(limit, end));
+      for (int i = end - 1; i >= 0 && out.size() < limit; i--) out.add(decode(i));
+      return out;
+    }
+
+    private List<ChatMessageDTO> findAfter(MessageCursor after, int limit) {
+      int start = after == null ? 0 : firstAtOrAfter(after, true);
+      List<ChatMessageDTO> out = new ArrayList<>(Math.min(limit, count - start));
+      for (int i = start; i < count && out.size() < limit; i++) out.add(decode(i));
+      return out;
+    }
+
+    private List<ChatMessageDTO> findBySeq(long fromSeq, long toSeq) {
+      int start = (int) Math.max(fromSeq - 1, 0);
+      int end = (int) Math.min(toSeq, count);
+      List<ChatMessageDTO> out = new ArrayList<>(Math.max(end - start, 0));
+      for (int i = start; i < end; i++) out.add(decode(i));
+      return out;
+    }
+
+    // Index of the first record not below the cursor, or strictly above it when exclusive.
+    private int firstAtOrAfter(MessageCursor cursor, boolean exclusive) {
+      long micros = toMicros(cursor.getCreatedAt());
+      int lo = 0;
+      int hi = count;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        int cmp = compare(record(mid), micros, cursor.getId());
+        if (cmp < 0 || (exclusive && cmp == 0)) lo = mid + 1;
+        else hi = mid;
+      }
+      return lo;
+    }
+
+    // Same order as the Postgres keyset queries: createdAt, then the id as unsigned bytes.
+    private int compare(ByteBuffer record, long micros, UUID id) {
+      int cmp = Long.compare(record.getLong(CREATED_AT_OFFSET), micros);
+      if (cmp != 0) return cmp;
+      cmp = Long.compareUnsigned(record.getLong(ID_OFFSET), id.getMostSignificantBits());
+      if (cmp != 0) return cmp;
+      return Long.compareUnsigned(record.getLong(ID_OFFSET + 8), id.getLeastSignificantBits());
+    }
+
+    // Copies everything out of the mapping, so the DTO stays valid after the segment is unmapped.
+    private ChatMessageDTO decode(int position) {
+      ByteBuffer record = record(position);
+      int p = STRINGS_OFFSET;
+      String[] strings = new String[6];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = getString(record, p);
+        p += 4 + Math.max(record.getInt(p), 0);
+      }
+      return new ChatMessageDTO(
+          new UUID(record.getLong(ID_OFFSET), record.getLong(ID_OFFSET + 8)),
+          friendshipId,
+          new UUID(record.getLong(SENDER_OFFSET), record.getLong(SENDER_OFFSET + 8)),
+          strings[0],
+          strings[1],
+          strings[2],
+          fromMicros(record.getLong(CREATED_AT_OFFSET)),
+          strings[3],
+          strings[4],
+          strings[5],
+          (long) position + 1);
+    }
+
+    // Callers hold the log's lock, and no slice of a segment outlives one, so nothing can reach
+    // the mappings once they are gone.
+    private void close() {
+      closed = true;
+      segments.forEach(MappedMessageStore::unmap);
+      segments.clear();
+      count = 0;
+    }
+  }
+}
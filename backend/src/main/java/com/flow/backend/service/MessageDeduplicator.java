@@ -0,0 +1,190 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatDedupeProperties;
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.MessageCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Makes sends with a client-generated message id idempotent. Retries that reach the same node
+// share the first attempt's future; the rest are caught by the unique (sender, client id) claim,
+// which is taken in the message's own transaction.
+@Service
+public class MessageDeduplicator {
+
+  private static final String CLAIM_SQL =
+      "insert into client_message_ids (id, sender_id, client_message_id, friendship_id,"
+          + " message_id, message_created_at, created_at) values (?, ?, ?, ?, ?, ?, now())"
+          + " on conflict (sender_id, client_message_id) do nothing";
+
+  @Autowired private ChatDedupeProperties properties;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private MessageStore messageStore;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private Map<Key, CompletableFuture<SentMessage>> recent;
+
+  private Counter duplicates;
+
+  @PostConstruct
+  public void init() {
+    recent =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<SentMessage>> e) {
+            return size() > properties.getCacheSize();
+          }
+        };
+    duplicates = meterRegistry.counter("chat.messages.duplicates");
+  }
+
+  public CompletableFuture<SentMessage> deduplicate(
+      UUID senderId, UUID clientMessageId, Supplier<CompletableFuture<SentMessage>> send) {
+    if (clientMessageId == null) return send.get();
+    Key key = new Key(senderId, clientMessageId);
+    CompletableFuture<SentMessage> mine = new CompletableFuture<>();
+    CompletableFuture<SentMessage> existing;
+    synchronized (recent) {
+      existing = recent.putIfAbsent(key, mine);
+    }
+    if (existing != null) {
+      duplicates.increment();
+      return existing.thenApply(SentMessage::asDuplicate);
+    }
+
+    CompletableFuture<SentMessage> sent;
+    try {
+      sent = send.get();
+    } catch (RuntimeException e) {
+      // A retry already waiting on this attempt fails with it.
+      forget(key, mine);
+      mine.completeExceptionally(e);
+      return mine;
+    }
+    sent.whenComplete(
+        (result, ex) -> {
+          // A failed attempt must not answer the retry that follows it.
+          if (ex != null) {
+            forget(key, mine);
+            mine.completeExceptionally(ex);
+          } else {
+            mine.complete(result);
+          }
+        });
+    return mine;
+  }
+
+  // Claims the draft's client id before it is stored. Returns the original message when the id
+  // was claimed already; a concurrent claim blocks until its transaction ends.
+  public Optional<ChatMessageDTO> claim(ChatMessageDTO draft) {
+    int claimed =
+        jdbcTemplate.update(
+            CLAIM_SQL,
+            UUID.randomUUID(),
+            draft.getSenderId(),
+            draft.getClientMessageId(),
+            draft.getFriendshipId(),
+            null,
+            null);
+    if (claimed == 1) return Optional.empty();
+    duplicates.increment();
+    return Optional.of(
+        findOriginal(draft)
+            .orElseThrow(() -> new IllegalArgumentException("Message id already used")));
+  }
+
+  public void recordStored(ChatMessageDTO message) {
+    jdbcTemplate.update(
+        "update client_message_ids set message_id = ?, message_created_at = ?"
+            + " where sender_id = ? and client_message_id = ?",
+        message.getId(),
+        OffsetDateTime.ofInstant(message.getCreatedAt(), ZoneOffset.UTC),
+        message.getSenderId(),
+        message.getClientMessageId());
+  }
+
+  // Batch variant for messages whose id and createdAt are already assigned. Returns the messages
+  // that were claimed; the others are duplicates.
+  public List<ChatMessageDTO> claimAll(List<ChatMessageDTO> messages) {
+    int[] counts =
+        jdbcTemplate.batchUpdate(
+            CLAIM_SQL,
+            messages.stream()
+                .map(
+                    m ->
+                        new Object[] {
+                          UUID.randomUUID(),
+                          m.getSenderId(),
+                          m.getClientMessageId(),
+                          m.getFriendshipId(),
+                          m.getId(),
+                          OffsetDateTime.ofInstant(m.getCreatedAt(), ZoneOffset.UTC)
+                        })
+                .toList());
+    List<ChatMessageDTO> claimed = new ArrayList<>(messages.size());
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) claimed.add(messages.get(i));
+      else duplicates.increment();
+    }
+    return claimed;
+  }
+
+  public Optional<ChatMessageDTO> findOriginal(ChatMessageDTO draft) {
+    List<Map<String, Object>> rows =
+        jdbcTemplate.queryForList(
+            "select friendship_id, message_id, message_created_at from client_message_ids"
+                + " where sender_id = ? and client_message_id = ? and message_id is not null",
+            draft.getSenderId(),
+            draft.getClientMessageId());
+    if (rows.isEmpty()) return Optional.empty();
+    Map<String, Object> row = rows.get(0);
+    MessageCursor at =
+        new MessageCursor(
+            ((Timestamp) row.get("message_created_at")).toInstant(), (UUID) row.get("message_id"));
+    Optional<ChatMessageDTO> original = messageStore.find((UUID) row.get("friendship_id"), at);
+    original.ifPresent(m -> m.setClientMessageId(draft.getClientMessageId()));
+    return original;
+  }
+
+  public void deleteByFriendshipId(UUID friendshipId) {
+    jdbcTemplate.update("delete from client_message_ids where friendship_id = ?", friendshipId);
+  }
+
+  @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+  public void prune() {
+    Instant cutoff = Instant.now().minus(properties.getRetentionHours(), ChronoUnit.HOURS);
+    jdbcTemplate.update(
+        "delete from client_message_ids where created_at < ?",
+        OffsetDateTime.ofInstant(cutoff, ZoneOffset.UTC));
+  }
+
+  private void forget(Key key, CompletableFuture<SentMessage> future) {
+    synchronized (recent) {
+      recent.remove(key, future);
+    }
+  }
+
+  private record Key(UUID senderId, UUID clientMessageId) {}
+}
@@ -0,0 +1,115 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatPurgeProperties;
+import com.flow.backend.model.MessagePurgeJob;
+import com.flow.backend.repository.MessagePurgeJobRepository;
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Deletes the messages of tombstoned conversations in bounded batches. Jobs live in
+// message_purge_jobs, so a restart resumes where the previous run stopped.
+@Service
+public class MessagePurgeService {
+
+  private static final Logger log = LoggerFactory.getLogger(MessagePurgeService.class);
+
+  private static final String DELETE_TOMBSTONED_USER_SQL =
+      "delete from users where id = ? and deleted_at is not null and not exists"
+          + " (select 1 from friendships where user_a_id = ? or user_b_id = ?)";
+
+  @Autowired private ChatPurgeProperties properties;
+
+  @Autowired private MessagePurgeJobRepository messagePurgeJobRepository;
+
+  @Autowired private MessageStore messageStore;
+
+  @Autowired private ConversationSummaryService conversationSummaryService;
+
+  @Autowired private MessageDeduplicator messageDeduplicator;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate transactionTemplate;
+
+  @PostConstruct
+  public void init() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  public void schedule(UUID friendshipId, UUID userId) {
+    messagePurgeJobRepository.save(new MessagePurgeJob(friendshipId, userId));
+  }
+
+  @Scheduled(fixedDelayString = "${chat.purge.interval-ms:1000}")
+  public void run() {
+    int budget = properties.getBatchesPerRun();
+    for (MessagePurgeJob job : messagePurgeJobRepository.findAllByOrderByCreatedAtAsc()) {
+      try {
+        while (budget > 0) {
+          budget--;
+          if (purgeBatch(job)) {
+            finish(job);
+            break;
+          }
+        }
+      } catch (DataAccessException e) {
+        log.warn("Purge of conversation {} failed, retrying later", job.getFriendshipId(), e);
+        return;
+      }
+      if (budget == 0) return;
+    }
+  }
+
+  private boolean purgeBatch(MessagePurgeJob job) {
+    int deleted =
+        transactionTemplate.execute(
+            status -> {
+              int n = messageStore.deleteBatch(job.getFriendshipId(), properties.getBatchSize());
+              job.setPurgedMessages(job.getPurgedMessages() + n);
+              messagePurgeJobRepository.save(job);
+              return n;
+            });
+    return deleted < properties.getBatchSize();
+  }
+
+  private void finish(MessagePurgeJob job) {
+    List<UUID> participants =
+        transactionTemplate.execute(
+            status -> {
+              List<UUID> users =
+                  jdbcTemplate.queryForList(
+                      "select unnest(array[user_a_id, user_b_id]) from friendships where id = ?",
+                      UUID.class,
+                      job.getFriendshipId());
+              conversationSummaryService.deleteByFriendshipId(job.getFriendshipId());
+              messageDeduplicator.deleteByFriendshipId(job.getFriendshipId());
+              jdbcTemplate.update("delete from friendships where id = ?", job.getFriendshipId());
+              messagePurgeJobRepository.delete(job);
+              return users;
+            });
+    log.info(
+        "Purged conversation {} ({} messages)", job.getFriendshipId(), job.getPurgedMessages());
+    // A deleted account goes once its last conversation does, whichever job that was: one removed
+    // as a friend before the account was deleted carries no user id.
+    for (UUID userId : participants) {
+      try {
+        jdbcTemplate.update(DELETE_TOMBSTONED_USER_SQL, userId, userId, userId);
+      } catch (DataAccessException e) {
+        // Rows such as activity logs may still reference the account; it stays tombstoned.
+        log.warn("Could not delete tombstoned user {}: {}", userId, e.getMessage());
+      }
+    }
+  }
+}
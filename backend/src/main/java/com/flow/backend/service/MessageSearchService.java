@@ -0,0 +1,122 @@
+package com.flow.backend.service;
+
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.repository.ChatMessageRepository;
+import com.flow.backend.util.ChatMessageUtil;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+@Service
+public class MessageSearchService {
+
+  private static final Logger log = LoggerFactory.getLogger(MessageSearchService.class);
+
+  @Autowired private ChatMessageRepository chatMessageRepository;
+
+  @Autowired private ChatMessageUtil chatMessageUtil;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private MessageStore messageStore;
+
+  private volatile boolean fullTextAvailable = false;
+
+  // The column, its trigger and the indexes come from db/migration/001-message-search.sql, which
+  // runs offline; until all of them exist, ranked search falls back to substring matching.
+  public void detectFullText() {
+    Integer columns =
+        jdbcTemplate.queryForObject(
+            "select count(*) from information_schema.columns"
+                + " where table_schema = current_schema() and table_name = 'chat_messages'"
+                + " and column_name = 'content_tsv'",
+            Integer.class);
+    Integer indexes =
+        jdbcTemplate.queryForObject(
+            "select count(*) from pg_indexes"
+                + " where schemaname = current_schema() and tablename = 'chat_messages'"
+                + " and indexname in ('idx_chat_messages_content_tsv',"
+                + " 'idx_chat_messages_content_trgm')",
+            Integer.class);
+    fullTextAvailable = columns != null && columns > 0 && indexes != null && indexes == 2;
+    if (!fullTextAvailable) {
+      log.info(
+          "chat_messages.content_tsv or its search indexes not found, ranked search uses"
+              + " substring matching");
+    }
+  }
+
+  public List<ChatMessageDTO> search(
+      UUID friendshipId, String q, int limit, boolean ranked, boolean highlight) {
+    if (q == null || q.isBlank()) return List.of();
+
+    if (ranked && fullTextAvailable && messageStore instanceof JpaMessageStore) {
+      return chatMessageRepository.searchByFullText(friendshipId, q, limit, highlight).stream()
+          .map(chatMessageUtil::createChatMessageDTO)
+          .collect(Collectors.toList());
+    }
+
+    Pattern pattern =
+        Pattern.compile(Pattern.quote(q), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    List<ChatMessageDTO> out =
+        messageStore instanceof JpaMessageStore
+            ? chatMessageRepository
+                .searchBySubstring(friendshipId, "%" + escapeLike(q) + "%", limit)
+                .stream()
+                .map(chatMessageUtil::createChatMessageDTO)
+                .collect(Collectors.toList())
+            : scan(friendshipId, pattern, limit);
+    if (highlight) {
+      for (ChatMessageDTO dto : out) {
+        dto.setHighlight(highlight(dto.getContent(), pattern));
+      }
+    }
+    return out;
+  }
+
+  // Other stores keep messages outside chat_messages and its indexes, so the conversation is read
+  // through the store and matched in memory, keeping only the newest matches.
+  private List<ChatMessageDTO> scan(UUID friendshipId, Pattern pattern, int limit) {
+    ArrayDeque<ChatMessageDTO> newest = new ArrayDeque<>();
+    messageStore.forEach(
+        friendshipId,
+        m -> {
+          if (m.getContent() == null || !pattern.matcher(m.getContent()).find()) return;
+          if (newest.size() == limit) newest.removeFirst();
+          newest.addLast(m);
+        });
+    List<ChatMessageDTO> out = new ArrayList<>(newest);
+    Collections.reverse(out);
+    return out;
+  }
+
+  // Escapes the text around and inside each match, so only the <mark> tags are markup.
+  private static String highlight(String content, Pattern pattern) {
+    Matcher matcher = pattern.matcher(content);
+    StringBuilder out = new StringBuilder();
+    int last = 0;
+    while (matcher.find()) {
+      out.append(HtmlUtils.htmlEscape(content.substring(last, matcher.start())))
+          .append("<mark>")
+          .append(HtmlUtils.htmlEscape(matcher.group()))
+          .append("</mark>");
+      last = matcher.end();
+    }
+    return out.append(HtmlUtils.htmlEscape(content.substring(last))).toString();
+  }
+
+  private static String escapeLike(String q) {
+    return q.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+  }
+}
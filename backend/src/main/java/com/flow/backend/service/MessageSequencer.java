@@ -0,0 +1,87 @@
+package com.flow.backend.service;
+
+import java.util.List;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Hands out per-conversation message sequence numbers. The counter lives on the friendships row,
+// so the row lock taken by the increment serialises writers of one conversation only (across
+// nodes too) and is held until commit, which keeps seq order equal to commit order.
+@Service
+public class MessageSequencer {
+
+  private static final Logger log = LoggerFactory.getLogger(MessageSequencer.class);
+
+  private static final String RESERVE_SQL =
+      "update friendships set message_seq = message_seq + ? where id = ? returning message_seq";
+
+  private static final String SHIFT_SQL =
+      "update chat_messages set seq = seq + ? where friendship_id = ? and seq is not null";
+
+  private static final String BACKFILL_SQL =
+      "update chat_messages m set seq = n.seq"
+          + " from (select id, created_at, row_number() over (order by created_at, id) as seq"
+          + " from chat_messages where friendship_id = ? and seq is null) n"
+          + " where m.friendship_id = ? and m.id = n.id and m.created_at = n.created_at";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Transactional(propagation = Propagation.MANDATORY)
+  public long next(UUID friendshipId) {
+    return reserve(friendshipId, 1);
+  }
+
+  // Reserves count consecutive numbers and returns the first of them.
+  @Transactional(propagation = Propagation.MANDATORY)
+  public long reserve(UUID friendshipId, int count) {
+    List<Long> last = jdbcTemplate.queryForList(RESERVE_SQL, Long.class, count, friendshipId);
+    if (last.isEmpty()) throw new IllegalArgumentException("Conversation not found");
+    return last.get(0) - count + 1;
+  }
+
+  // Numbers messages written before sequencing existed. They predate every sequenced message, so
+  // they take 1..n and the numbers already handed out move up by n, all in one transaction per
+  // conversation under the row lock new messages take. Clients holding a seq watermark for such a
+  // conversation see already-synced messages once more, never a gap.
+  public void backfill() {
+    List<UUID> pending =
+        jdbcTemplate.queryForList(
+            "select distinct friendship_id from chat_messages where seq is null", UUID.class);
+    if (pending.isEmpty()) return;
+    log.info("Assigning message sequence numbers in {} conversations", pending.size());
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    for (UUID friendshipId : pending) {
+      tx.executeWithoutResult(
+          status -> {
+            List<Long> locked =
+                jdbcTemplate.queryForList(
+                    "select message_seq from friendships where id = ? for update",
+                    Long.class,
+                    friendshipId);
+            if (locked.isEmpty()) return;
+            Integer legacy =
+                jdbcTemplate.queryForObject(
+                    "select count(*) from chat_messages where friendship_id = ? and seq is null",
+                    Integer.class,
+                    friendshipId);
+            if (legacy == null || legacy == 0) return;
+            jdbcTemplate.update(SHIFT_SQL, legacy, friendshipId);
+            jdbcTemplate.update(BACKFILL_SQL, friendshipId, friendshipId);
+            jdbcTemplate.update(
+                "update friendships set message_seq = coalesce(message_seq, 0) + ? where id = ?",
+                legacy,
+                friendshipId);
+          });
+    }
+  }
+}
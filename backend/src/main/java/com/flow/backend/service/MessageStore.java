@@ -0,0 +1,45 @@
+package com.flow.backend.service;
+
+import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.MessageCursor;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public interface MessageStore {
+
+  // Persists a new message from the caller's draft. The store assigns id, createdAt and seq on the
+  // draft and returns it.
+  ChatMessageDTO append(ChatMessageDTO message);
+
+  // The message at exactly this (createdAt, id) position.
+  Optional<ChatMessageDTO> find(UUID friendshipId, MessageCursor at);
+
+  // Newest first, strictly older than before; the newest messages when before is null.
+  List<ChatMessageDTO> findBefore(UUID friendshipId, MessageCursor before, int limit);
+
+  // Oldest first, strictly newer than after.
+  List<ChatMessageDTO> findAfter(UUID friendshipId, MessageCursor after, int limit);
+
+  // Messages whose seq is above their conversation's watermark, ordered by conversation and then
+  // seq, so whatever the limit cuts off each conversation's part is a gapless prefix.
+  List<ChatMessageDTO> findAfterSeq(Map<UUID, Long> watermarks, int limit);
+
+  // Up to before older and after newer neighbours of each anchor, oldest first, each message once;
+  // the anchors themselves are only included as neighbours of another anchor.
+  List<ChatMessageDTO> findAround(
+      UUID friendshipId, Collection<MessageCursor> anchors, int before, int after);
+
+  // Messages whose seq lies in [fromSeq, toSeq], in seq order.
+  List<ChatMessageDTO> findBySeq(UUID friendshipId, long fromSeq, long toSeq);
+
+  // Visits every message of the conversation oldest first without holding them all in memory.
+  void forEach(UUID friendshipId, Consumer<ChatMessageDTO> action);
+
+  // Deletes up to limit messages of the conversation and returns how many were removed; fewer
+  // than limit means the conversation is empty.
+  int deleteBatch(UUID friendshipId, int limit);
+}
@@ -0,0 +1,257 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatFanoutProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Relays /topic/chats/** between nodes over LISTEN/NOTIFY. Local sessions are served straight
+// away; the NOTIFY goes out from a sender thread so callers (the write-behind flusher among them)
+// never wait on it. Delivery is best effort: a node that misses a broadcast while its listener
+// reconnects leaves clients to catch up through the seq range endpoint.
+//
+// Peer events share the queue and the channel, queued once their transaction commits. Rather than
+// being dropped when the queue is full they wait for room, for a while. What a listener misses
+// while reconnecting is covered by a resync event once it is back.
+@Service
+@Primary
+@ConditionalOnProperty(name = "chat.fanout.mode", havingValue = "postgres")
+public class PostgresChatFanout implements ChatFanout {
+
+  private static final Logger log = LoggerFactory.getLogger(PostgresChatFanout.class);
+
+  private static final String CHANNEL = "chat_fanout";
+
+  // pg_notify rejects payloads of 8000 bytes or more; larger ones are parked in the spill table
+  // and the notification carries "@<id>" instead.
+  private static final int MAX_NOTIFY_BYTES = 7900;
+
+  private static final List<String> SPILL_DDL =
+      List.of(
+          "CREATE UNLOGGED TABLE IF NOT EXISTS chat_fanout_spill (id bigserial PRIMARY KEY,"
+              + " payload text NOT NULL, created_at timestamptz NOT NULL DEFAULT now())",
+          "CREATE INDEX IF NOT EXISTS idx_chat_fanout_spill_created_at"
+              + " ON chat_fanout_spill (created_at)");
+
+  private static final long EVENT_OFFER_TIMEOUT_SECONDS = 5;
+
+  private static final String NOTIFY_SQL =
+      "select pg_notify('"
+          + CHANNEL
+          + "', p) from unnest(?::text[]) with ordinality as t(p, i) order by i";
+
+  @Autowired private ChatFanoutProperties properties;
+
+  @Autowired private LocalChatFanout localChatFanout;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private DataSourceProperties dataSourceProperties;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private ApplicationEventPublisher eventPublisher;
+
+  private final String node = UUID.randomUUID().toString();
+
+  private BlockingQueue<Envelope> outbox;
+  private Thread sender;
+  private Thread listener;
+  private volatile boolean running;
+
+  private Counter published;
+  private Counter received;
+  private Counter dropped;
+  private Counter spilled;
+
+  @PostConstruct
+  public void start() {
+    SPILL_DDL.forEach(jdbcTemplate::execute);
+    outbox = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    published = meterRegistry.counter("chat.fanout.published");
+    received = meterRegistry.counter("chat.fanout.received");
+    dropped = meterRegistry.counter("chat.fanout.dropped");
+    spilled = meterRegistry.counter("chat.fanout.spilled");
+    meterRegistry.gauge("chat.fanout.queue.depth", outbox, BlockingQueue::size);
+
+    running = true;
+    sender = new Thread(this::sendLoop, "chat-fanout-sender");
+    sender.setDaemon(true);
+    sender.start();
+    listener = new Thread(this::listenLoop, "chat-fanout-listener");
+    listener.setDaemon(true);
+    listener.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    sender.join(TimeUnit.SECONDS.toMillis(5));
+    listener.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  @Override
+  public void publish(String destination, byte[] payload) {
+    localChatFanout.publish(destination, payload);
+    if (!destination.startsWith(RELAYED_PREFIX)) return;
+    if (!outbox.offer(Envelope.of(node, destination, payload))) dropped.increment();
+  }
+
+  @Override
+  public void publishEvent(String type, String data) {
+    Envelope envelope = new Envelope(node, EVENT_PREFIX + type, data);
+    ChatFanout.afterCommit(() -> enqueueEvent(envelope));
+  }
+
+  @Override
+  public boolean hasPeers() {
+    return true;
+  }
+
+  @Scheduled(fixedDelay = 60, timeUnit = TimeUnit.SECONDS)
+  public void pruneSpill() {
+    jdbcTemplate.update(
+        "delete from chat_fanout_spill where created_at < now() - make_interval(secs => ?)",
+        properties.getSpillRetentionSeconds());
+  }
+
+  private void enqueueEvent(Envelope envelope) {
+    try {
+      if (outbox.offer(envelope, EVENT_OFFER_TIMEOUT_SECONDS, TimeUnit.SECONDS)) return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    dropped.increment();
+    log.warn("Fan-out queue full, other nodes miss a {} event", envelope.destination());
+  }
+
+  private void sendLoop() {
+    List<Envelope> batch = new ArrayList<>(properties.getBatchSize());
+    while (running || !outbox.isEmpty()) {
+      try {
+        Envelope first = outbox.poll(properties.getListenTimeoutMs(), TimeUnit.MILLISECONDS);
+        if (first == null) continue;
+        batch.add(first);
+        outbox.drainTo(batch, properties.getBatchSize() - 1);
+        sendNotifications(batch);
+        published.increment(batch.size());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.warn("Could not relay {} broadcasts to other nodes", batch.size(), e);
+        dropped.increment(batch.size());
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void sendNotifications(List<Envelope> batch) {
+    String[] wire = new String[batch.size()];
+    for (int i = 0; i < wire.length; i++) {
+      Envelope envelope = batch.get(i);
+      String encoded = envelope.encode();
+      if (encoded.getBytes(StandardCharsets.UTF_8).length >= MAX_NOTIFY_BYTES) {
+        encoded = spill(envelope);
+      }
+      wire[i] = encoded;
+    }
+    jdbcTemplate.query(NOTIFY_SQL, rs -> {}, (Object) wire);
+  }
+
+  private String spill(Envelope envelope) {
+    Long id =
+        jdbcTemplate.queryForObject(
+            "insert into chat_fanout_spill (payload) values (?) returning id",
+            Long.class,
+            envelope.payload());
+    spilled.increment();
+    return new Envelope(envelope.node(), envelope.destination(), "@" + id).encode();
+  }
+
+  // A dedicated connection rather than one borrowed from the pool: it stays open for the life of
+  // the node, and a pooled connection returned while still listening would buffer notifications
+  // for whoever borrows it next.
+  private void listenLoop() {
+    boolean reconnecting = false;
+    while (running) {
+      try (Connection connection =
+              DriverManager.getConnection(
+                  dataSourceProperties.determineUrl(),
+                  dataSourceProperties.determineUsername(),
+                  dataSourceProperties.determinePassword());
+          Statement statement = connection.createStatement()) {
+        statement.execute("LISTEN " + CHANNEL);
+        if (reconnecting) eventPublisher.publishEvent(new PeerEvent(node, PeerEvent.RESYNC, ""));
+        reconnecting = true;
+        PGConnection pg = connection.unwrap(PGConnection.class);
+        while (running) {
+          PGNotification[] notifications =
+              pg.getNotifications((int) properties.getListenTimeoutMs());
+          if (notifications == null) continue;
+          for (PGNotification notification : notifications) receive(notification.getParameter());
+        }
+      } catch (SQLException e) {
+        if (!running) return;
+        log.warn("Fan-out listener lost its connection, reconnecting: {}", e.getMessage());
+        try {
+          Thread.sleep(properties.getReconnectDelayMs());
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private void receive(String wire) {
+    try {
+      Envelope envelope = Envelope.decode(wire);
+      if (node.equals(envelope.node())) return;
+      String payload = envelope.payload();
+      if (payload.startsWith("@")) {
+        List<String> spilledPayload =
+            jdbcTemplate.queryForList(
+                "select payload from chat_fanout_spill where id = ?",
+                String.class,
+                Long.parseLong(payload.substring(1)));
+        if (spilledPayload.isEmpty()) return;
+        payload = spilledPayload.get(0);
+      }
+      received.increment();
+      if (envelope.destination().startsWith(EVENT_PREFIX)) {
+        eventPublisher.publishEvent(
+            new PeerEvent(envelope.node(), envelope.destination().substring(1), payload));
+      } else {
+        localChatFanout.publish(envelope.destination(), payload.getBytes(StandardCharsets.UTF_8));
+      }
+    } catch (RuntimeException e) {
+      log.warn("Dropping relayed broadcast: {}", e.getMessage());
+    }
+  }
+}
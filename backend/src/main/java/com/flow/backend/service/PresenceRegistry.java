@@ -0,0 +1,260 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatFanoutProperties;
+import com.flow.backend.config.ChatPresenceProperties;
+import com.flow.backend.config.StompPrincipal;
+import com.flow.backend.config.WebSocketSessions;
+import com.flow.backend.repository.FriendshipRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+// Online users of this node, counted by open STOMP sessions. A session that negotiated heartbeats
+// but sends nothing for the timeout is dropped and its connection closed, so a client that was
+// only stalled reconnects and is counted again. Friends are told about
+// transitions on their /user/queue/presence.
+//
+// Other nodes' users are known from peer events: each node relays its own transitions and, every
+// chat.fanout.presence-sync-ms, a snapshot of its online users that replaces what peers had and
+// repairs anything they missed. A node not heard from for three intervals is taken to be gone.
+@Service
+public class PresenceRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(PresenceRegistry.class);
+
+  private static final CloseStatus IDLE = new CloseStatus(4408, "Heartbeat timeout, reconnect");
+
+  private static final String PRESENCE_EVENT = "presence";
+  private static final String SNAPSHOT_EVENT = "presence-snapshot";
+
+  // User ids per snapshot event, which keeps each one under the NOTIFY payload limit.
+  private static final int SNAPSHOT_CHUNK = 150;
+
+  @Autowired private ChatPresenceProperties properties;
+
+  @Autowired private FriendshipRepository friendshipRepository;
+
+  @Autowired private SimpMessagingTemplate messagingTemplate;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private WebSocketSessions webSocketSessions;
+
+  @Autowired private ChatFanout chatFanout;
+
+  @Autowired private ChatFanoutProperties fanoutProperties;
+
+  private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<UUID, Integer> online = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Peer> peers = new ConcurrentHashMap<>();
+
+  // Held while a transition changes online and queues its event, and while a snapshot is taken and
+  // queued, so peers receive them in the order they happened.
+  private final Object transitions = new Object();
+  private long snapshotGeneration;
+
+  @PostConstruct
+  public void init() {
+    meterRegistry.gaugeMapSize("chat.presence.online", List.of(), online);
+    meterRegistry.gaugeMapSize("chat.presence.sessions", List.of(), sessions);
+    meterRegistry.gaugeMapSize("chat.presence.peers", List.of(), peers);
+  }
+
+  public boolean isOnline(UUID userId) {
+    if (online.containsKey(userId)) return true;
+    for (Peer peer : peers.values()) {
+      if (peer.online.contains(userId)) return true;
+    }
+    return false;
+  }
+
+  @EventListener
+  public void onConnected(SessionConnectedEvent event) {
+    Principal user = event.getUser();
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+    if (!(user instanceof StompPrincipal principal) || sessionId == null) return;
+    UUID userId = principal.getUserId();
+    if (sessions.putIfAbsent(sessionId, new Session(userId, sendsHeartbeats(event))) != null) {
+      return;
+    }
+    boolean first;
+    synchronized (transitions) {
+      first = online.merge(userId, 1, Integer::sum) == 1;
+      if (first) chatFanout.publishEvent(PRESENCE_EVENT, userId + " true");
+    }
+    if (first) publish(userId);
+  }
+
+  @EventListener
+  public void onDisconnect(SessionDisconnectEvent event) {
+    remove(event.getSessionId());
+  }
+
+  // Called for every inbound frame, heartbeats included.
+  public void touch(String sessionId) {
+    Session session = sessions.get(sessionId);
+    if (session != null) session.lastSeen = System.nanoTime();
+  }
+
+  @Scheduled(fixedDelayString = "${chat.presence.heartbeat-ms:10000}")
+  public void expireIdle() {
+    long cutoff =
+        System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(properties.getSessionTimeoutMs());
+    for (Map.Entry<String, Session> e : sessions.entrySet()) {
+      Session session = e.getValue();
+      if (session.heartbeats && session.lastSeen - cutoff < 0) {
+        remove(e.getKey());
+        webSocketSessions.close(e.getKey(), IDLE);
+      }
+    }
+  }
+
+  // Silence only means a dead connection if the client agreed to send heartbeats.
+  private static boolean sendsHeartbeats(SessionConnectedEvent event) {
+    Object connect =
+        event.getMessage().getHeaders().get(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+    if (!(connect instanceof Message<?> message)) return false;
+    long[] heartbeat = StompHeaderAccessor.wrap(message).getHeartbeat();
+    return heartbeat[0] > 0;
+  }
+
+  private void remove(String sessionId) {
+    Session session = sessionId == null ? null : sessions.remove(sessionId);
+    if (session == null) return;
+    boolean last;
+    synchronized (transitions) {
+      last = online.computeIfPresent(session.userId, (id, n) -> n == 1 ? null : n - 1) == null;
+      if (last) chatFanout.publishEvent(PRESENCE_EVENT, session.userId + " false");
+    }
+    if (last) publish(session.userId);
+  }
+
+  @Scheduled(fixedDelayString = "${chat.fanout.presence-sync-ms:15000}")
+  public void syncPeers() {
+    if ("local".equals(fanoutProperties.getMode())) return;
+    synchronized (transitions) {
+      List<UUID> users = List.copyOf(online.keySet());
+      long generation = ++snapshotGeneration;
+      int chunks = Math.max(1, (users.size() + SNAPSHOT_CHUNK - 1) / SNAPSHOT_CHUNK);
+      for (int i = 0; i < chunks; i++) {
+        StringBuilder data = new StringBuilder();
+        data.append(generation).append(' ').append(i).append(' ').append(chunks);
+        int end = Math.min(users.size(), (i + 1) * SNAPSHOT_CHUNK);
+        for (UUID userId : users.subList(i * SNAPSHOT_CHUNK, end)) data.append(' ').append(userId);
+        chatFanout.publishEvent(SNAPSHOT_EVENT, data.toString());
+      }
+    }
+    long cutoff =
+        System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(fanoutProperties.getPresenceSyncMs() * 3);
+    for (Map.Entry<String, Peer> e : peers.entrySet()) {
+      if (e.getValue().lastHeard - cutoff < 0) {
+        log.info("No presence from node {}, dropping its users", e.getKey());
+        replace(e.getValue(), Set.of(), () -> peers.remove(e.getKey(), e.getValue()));
+      }
+    }
+  }
+
+  // Synchronized with replace, which also runs from syncPeers for expired peers.
+  @EventListener
+  public synchronized void onPeerEvent(ChatFanout.PeerEvent event) {
+    if (!event.type().equals(PRESENCE_EVENT) && !event.type().equals(SNAPSHOT_EVENT)) return;
+    Peer peer = peers.computeIfAbsent(event.node(), node -> new Peer());
+    peer.lastHeard = System.nanoTime();
+    String[] parts = event.data().split(" ");
+    if (event.type().equals(PRESENCE_EVENT)) {
+      UUID userId = UUID.fromString(parts[0]);
+      boolean before = isOnline(userId);
+      if (Boolean.parseBoolean(parts[1])) peer.online.add(userId);
+      else peer.online.remove(userId);
+      if (isOnline(userId) != before) notifyFriends(userId);
+      return;
+    }
+    long generation = Long.parseLong(parts[0]);
+    int chunks = Integer.parseInt(parts[2]);
+    if (generation != peer.pendingGeneration) {
+      peer.pendingGeneration = generation;
+      peer.pending = new HashSet<>();
+      peer.pendingChunks = 0;
+    }
+    for (int i = 3; i < parts.length; i++) peer.pending.add(UUID.fromString(parts[i]));
+    if (++peer.pendingChunks == chunks) replace(peer, peer.pending, () -> {});
+  }
+
+  // Swaps in a peer's complete set of online users and tells local friends of every user whose
+  // overall state changed as a result.
+  private synchronized void replace(Peer peer, Set<UUID> users, Runnable swapped) {
+    Set<UUID> changed = new HashSet<>(users);
+    changed.removeAll(peer.online);
+    for (UUID userId : peer.online) {
+      if (!users.contains(userId)) changed.add(userId);
+    }
+    Map<UUID, Boolean> before = new HashMap<>();
+    for (UUID userId : changed) before.put(userId, isOnline(userId));
+    peer.online.retainAll(users);
+    peer.online.addAll(users);
+    swapped.run();
+    for (UUID userId : changed) {
+      if (isOnline(userId) != before.get(userId)) notifyFriends(userId);
+    }
+  }
+
+  // Friends connected to this node, if any, learn of a change seen on another node.
+  private void notifyFriends(UUID userId) {
+    if (!sessions.isEmpty()) publish(userId);
+  }
+
+  // Sends the state at publish time rather than the transition, so racing connects and
+  // disconnects cannot leave friends with a stale value.
+  private void publish(UUID userId) {
+    Map<String, Object> event =
+        Map.of("type", "presence", "userId", userId.toString(), "online", isOnline(userId));
+    try {
+      for (String friend : friendshipRepository.findFriendEmailsByUserId(userId)) {
+        messagingTemplate.convertAndSendToUser(friend, "/queue/presence", event);
+      }
+    } catch (MessagingException e) {
+      log.warn("Failed to publish presence of {}: {}", userId, e.getMessage());
+    }
+  }
+
+  private static final class Peer {
+    private final Set<UUID> online = ConcurrentHashMap.newKeySet();
+    private volatile long lastHeard = System.nanoTime();
+    private long pendingGeneration;
+    private Set<UUID> pending = new HashSet<>();
+    private int pendingChunks;
+  }
+
+  private static final class Session {
+    private final UUID userId;
+    private final boolean heartbeats;
+    private volatile long lastSeen = System.nanoTime();
+
+    private Session(UUID userId, boolean heartbeats) {
+      this.userId = userId;
+      this.heartbeats = heartbeats;
+    }
+  }
+}
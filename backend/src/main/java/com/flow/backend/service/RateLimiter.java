@@ -0,0 +1,91 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatRateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Per-user token buckets, one slot per budget. Each bucket is kept as the time at which it will
+// be full again (the GCRA form of a token bucket), so taking a token is a single compare-and-set
+// on a long and no lock is ever held.
+@Service
+public class RateLimiter {
+
+  public enum Budget {
+    SEND,
+    TYPING,
+    SEARCH
+  }
+
+  @Autowired private ChatRateLimitProperties properties;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final ConcurrentHashMap<UUID, AtomicLongArray> buckets = new ConcurrentHashMap<>();
+
+  private final long origin = System.nanoTime();
+  private final long[] interval = new long[Budget.values().length];
+  private final long[] burst = new long[Budget.values().length];
+  private final Counter[] rejected = new Counter[Budget.values().length];
+
+  @PostConstruct
+  public void init() {
+    for (Budget budget : Budget.values()) {
+      ChatRateLimitProperties.Budget config = config(budget);
+      int i = budget.ordinal();
+      interval[i] = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / config.getRefillPerSecond()));
+      burst[i] = interval[i] * Math.max(1, config.getCapacity());
+      rejected[i] =
+          meterRegistry.counter("chat.ratelimit.rejected", "budget", budget.name().toLowerCase());
+    }
+    meterRegistry.gaugeMapSize("chat.ratelimit.users", List.of(), buckets);
+  }
+
+  public boolean tryAcquire(UUID userId, Budget budget) {
+    if (!properties.isEnabled()) return true;
+    AtomicLongArray state =
+        buckets.computeIfAbsent(userId, id -> new AtomicLongArray(Budget.values().length));
+    int i = budget.ordinal();
+    long now = System.nanoTime() - origin;
+    while (true) {
+      long full = state.get(i);
+      long next = Math.max(full, now) + interval[i];
+      if (next - now > burst[i]) {
+        rejected[i].increment();
+        return false;
+      }
+      if (state.compareAndSet(i, full, next)) return true;
+    }
+  }
+
+  // Users whose buckets have all refilled carry no state worth keeping. A send racing with the
+  // removal at worst starts again from a full bucket.
+  @Scheduled(fixedDelay = 60, timeUnit = TimeUnit.SECONDS)
+  public void evictIdle() {
+    long now = System.nanoTime() - origin;
+    buckets.values().removeIf(state -> isFull(state, now));
+  }
+
+  private static boolean isFull(AtomicLongArray state, long now) {
+    for (int i = 0; i < state.length(); i++) {
+      if (state.get(i) > now) return false;
+    }
+    return true;
+  }
+
+  private ChatRateLimitProperties.Budget config(Budget budget) {
+    return switch (budget) {
+      case SEND -> properties.getSend();
+      case TYPING -> properties.getTyping();
+      case SEARCH -> properties.getSearch();
+    };
+  }
+}
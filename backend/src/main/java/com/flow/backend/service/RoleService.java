@@ -54,6 +54,7 @@ public class RoleService {
     }
   }
 
+  @Transactional(readOnly = true)
   public Set<String> getUserRoles(User user) {
     List<UserRole> userRoles = userRoleRepository.findByUser(user);
     return userRoles.stream()
@@ -0,0 +1,12 @@
+package com.flow.backend.service;
+
+import com.flow.backend.dto.ChatMessageDTO;
+
+// Outcome of a send. A duplicate is a retry whose client-message-id was stored already; message is
+// then the original, which the conversation has been sent before.
+public record SentMessage(ChatMessageDTO message, boolean duplicate) {
+
+  public SentMessage asDuplicate() {
+    return duplicate ? this : new SentMessage(message, true);
+  }
+}
@@ -0,0 +1,143 @@
+package com.flow.backend.service;
+
+import com.flow.backend.config.ChatTypingProperties;
+import com.flow.backend.dto.UserSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Typing state per (conversation, user). Only transitions are broadcast; repeated "typing" frames
+// just push the expiry out. Expiry runs on a timing wheel: an entry sits in the slot of its
+// original deadline and, when that slot comes round, is either expired or moved to the slot of
+// its extended deadline, so keystrokes never touch the wheel.
+@Service
+public class TypingTracker {
+
+  @Autowired private ChatTypingProperties properties;
+
+  @Autowired private ChatBroadcaster chatBroadcaster;
+
+  @Autowired private ConversationMembershipCache conversationMembershipCache;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final ConcurrentHashMap<Key, Entry> typing = new ConcurrentHashMap<>();
+
+  private Queue<Entry>[] wheel;
+  private long startedAt;
+  private volatile long currentTick;
+
+  private Counter broadcasts;
+  private Counter dropped;
+
+  @PostConstruct
+  @SuppressWarnings("unchecked")
+  public void init() {
+    // One spare slot so an entry is never placed in the slot currently being drained.
+    int slots =
+        (int) ((properties.getTimeoutMs() + properties.getTickMs() - 1) / properties.getTickMs())
+            + 1;
+    wheel = new Queue[slots];
+    for (int i = 0; i < slots; i++) wheel[i] = new ConcurrentLinkedQueue<>();
+    startedAt = System.nanoTime();
+    broadcasts = meterRegistry.counter("chat.typing.broadcasts");
+    dropped = meterRegistry.counter("chat.typing.dropped");
+    meterRegistry.gaugeMapSize("chat.typing.active", List.of(), typing);
+  }
+
+  public void update(UUID friendshipId, UserSnapshot user, boolean isTyping) {
+    Key key = new Key(friendshipId, user.getId());
+    if (!isTyping) {
+      if (!stop(friendshipId, user)) dropped.increment();
+      return;
+    }
+    long deadline = tickNow() + ticks(properties.getTimeoutMs());
+    Entry existing = typing.get(key);
+    if (existing != null) {
+      existing.deadline = deadline;
+      dropped.increment();
+      return;
+    }
+    conversationMembershipCache.requireParticipant(friendshipId, user.getId());
+    Entry entry = new Entry(key, user, deadline);
+    if (typing.putIfAbsent(key, entry) != null) {
+      dropped.increment();
+      return;
+    }
+    schedule(entry);
+    broadcast(entry, true);
+  }
+
+  // Returns whether the user was typing.
+  public boolean stop(UUID friendshipId, UserSnapshot user) {
+    Entry entry = typing.remove(new Key(friendshipId, user.getId()));
+    if (entry == null) return false;
+    broadcast(entry, false);
+    return true;
+  }
+
+  @Scheduled(fixedRateString = "${chat.typing.tick-ms:250}")
+  public void tick() {
+    long now = tickNow();
+    while (currentTick < now) {
+      long tick = ++currentTick;
+      Queue<Entry> slot = wheel[(int) (tick % wheel.length)];
+      for (int n = slot.size(); n > 0; n--) {
+        Entry entry = slot.poll();
+        if (entry == null) break;
+        if (typing.get(entry.key) != entry) continue;
+        if (entry.deadline > tick) schedule(entry);
+        else if (typing.remove(entry.key, entry)) broadcast(entry, false);
+      }
+    }
+  }
+
+  private void schedule(Entry entry) {
+    // A deadline more than one rotation ahead lands in a slot early and is simply moved on again.
+    long at = Math.max(entry.deadline, currentTick + 1);
+    wheel[(int) (at % wheel.length)].add(entry);
+  }
+
+  private long tickNow() {
+    return (System.nanoTime() - startedAt) / (properties.getTickMs() * 1_000_000);
+  }
+
+  private long ticks(long millis) {
+    return (millis + properties.getTickMs() - 1) / properties.getTickMs();
+  }
+
+  private void broadcast(Entry entry, boolean isTyping) {
+    Map<String, Object> typingEvent = new HashMap<>();
+    typingEvent.put("type", "typing");
+    typingEvent.put("userId", entry.user.getId().toString());
+    typingEvent.put("userName", entry.user.getDisplayName());
+    typingEvent.put("isTyping", isTyping);
+    broadcasts.increment();
+    chatBroadcaster.broadcast(
+        ChatBroadcaster.topic(entry.key.friendshipId) + "/typing", typingEvent);
+  }
+
+  private record Key(UUID friendshipId, UUID userId) {}
+
+  private static final class Entry {
+    private final Key key;
+    private final UserSnapshot user;
+    private volatile long deadline;
+
+    private Entry(Key key, UserSnapshot user, long deadline) {
+      this.key = key;
+      this.user = user;
+      this.deadline = deadline;
+    }
+  }
+}
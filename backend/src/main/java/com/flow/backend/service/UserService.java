@@ -1,11 +1,11 @@
 package com.flow.backend.service;
 
 import com.flow.backend.model.User;
-import com.flow.backend.repository.ChatMessageRepository;
 import com.flow.backend.repository.FriendRequestRepository;
 import com.flow.backend.repository.FriendshipRepository;
 import com.flow.backend.repository.UserRepository;
 import com.flow.backend.repository.UserRoleRepository;
+import com.flow.backend.util.UserDisplayUtil;
 import com.flow.backend.util.UserUtil;
 import java.util.List;
 import java.util.Optional;
@@ -22,7 +22,7 @@ public class UserService {
 
   @Autowired private UserUtil userUtil;
 
-  @Autowired private ChatMessageRepository chatMessageRepository;
+  @Autowired private UserDisplayUtil userDisplayUtil;
 
   @Autowired private FriendRequestRepository friendRequestRepository;
 
@@ -30,6 +30,14 @@ public class UserService {
 
   @Autowired private UserRoleRepository userRoleRepository;
 
+  @Autowired private ChatHistoryCache chatHistoryCache;
+
+  @Autowired private ConversationMembershipCache conversationMembershipCache;
+
+  @Autowired private ConversationSubscriptions conversationSubscriptions;
+
+  @Autowired private MessagePurgeService messagePurgeService;
+
   public Optional<User> findByEmail(String email) {
     return userRepository.findByEmail(email);
   }
@@ -57,7 +65,14 @@ public class UserService {
   }
 
   public User updateUser(User user) {
-    return userRepository.save(user);
+    User saved = userRepository.save(user);
+    // Cached history carries sender names and pictures.
+    if (chatHistoryCache.isEnabled()) {
+      chatHistoryCache.updateSender(
+          userDisplayUtil.snapshot(saved),
+          conversationMembershipCache.conversationsOf(saved.getId()));
+    }
+    return saved;
   }
 
   public User findOrCreateUser(
@@ -101,16 +116,33 @@ public class UserService {
     }
   }
 
+  // Tombstones the account and its conversations; MessagePurgeService deletes the messages and
+  // finally the user row in the background, once no friendships row references it. That includes
+  // conversations removed earlier whose purge is still pending.
   @Transactional
   public void deleteUser(User user) {
-    chatMessageRepository.deleteByUser(user);
+    var friendships = friendshipRepository.findByUser(user);
+    for (var f : friendships) {
+      f.setDeletedAt(java.time.LocalDateTime.now());
+      chatHistoryCache.invalidate(f.getId());
+      conversationMembershipCache.invalidate(f.getId(), f.getUserA().getId(), f.getUserB().getId());
+      conversationSubscriptions.revoke(f.getId());
+      messagePurgeService.schedule(f.getId(), user.getId());
+    }
 
     friendRequestRepository.deleteByFromUserOrToUser(user, user);
 
-    friendshipRepository.deleteByUser1OrUser2(user);
-
     userRoleRepository.deleteByUser(user);
 
-    userRepository.delete(user);
+    if (!friendshipRepository.existsAnyByUserIdIncludingDeleted(user.getId())) {
+      userRepository.delete(user);
+      return;
+    }
+    // Free the unique columns so the same Google account can sign up again right away.
+    user.setDeletedAt(java.time.Instant.now());
+    user.setEmail("deleted-" + user.getId() + "@deleted.invalid");
+    user.setUsername(null);
+    user.setGoogleId(null);
+    userRepository.save(user);
   }
 }
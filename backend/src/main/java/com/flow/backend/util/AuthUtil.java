@@ -2,8 +2,11 @@ package com.flow.backend.util;
 
 import com.flow.backend.model.User;
 import com.flow.backend.service.UserService;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Component
 public class AuthUtil {
@@ -13,49 +16,39 @@ public class AuthUtil {
   @Autowired private UserService userService;
 
   public User validateAndGetUser(String authHeader) {
-    if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-      throw new SecurityException("Not authenticated");
-    }
-
-    String token = authHeader.substring(7);
-    if (!jwtUtil.validateToken(token)) {
-      throw new SecurityException("Invalid token");
-    }
-
-    String email = jwtUtil.extractUsername(token);
+    String email = verifiedClaims(authHeader).getSubject();
     return userService
         .findByEmail(email)
         .orElseThrow(() -> new SecurityException("User not found"));
   }
 
   public String extractEmailFromToken(String authHeader) {
-    if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-      throw new SecurityException("Not authenticated");
-    }
-
-    String token = authHeader.substring(7);
-    if (!jwtUtil.validateToken(token)) {
-      throw new SecurityException("Invalid token");
-    }
-
-    return jwtUtil.extractUsername(token);
+    return verifiedClaims(authHeader).getSubject();
   }
 
   public JwtClaims extractClaimsFromToken(String authHeader) {
+    Claims claims = verifiedClaims(authHeader);
+    return new JwtClaims(
+        claims.getSubject(), claims.get("name", String.class), claims.get("picture", String.class));
+  }
+
+  // JwtAuthenticationFilter has already verified this request's token; reuse its claims instead
+  // of verifying the token a second time.
+  private Claims verifiedClaims(String authHeader) {
     if (authHeader == null || !authHeader.startsWith("Bearer ")) {
       throw new SecurityException("Not authenticated");
     }
 
     String token = authHeader.substring(7);
-    if (!jwtUtil.validateToken(token)) {
-      throw new SecurityException("Invalid token");
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request != null
+        && token.equals(
+            request.getAttribute(JwtUtil.TOKEN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST))
+        && request.getAttribute(JwtUtil.CLAIMS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+            instanceof Claims claims) {
+      return claims;
     }
-
-    String email = jwtUtil.extractUsername(token);
-    String name = jwtUtil.extractClaim(token, claims -> claims.get("name", String.class));
-    String picture = jwtUtil.extractClaim(token, claims -> claims.get("picture", String.class));
-
-    return new JwtClaims(email, name, picture);
+    return jwtUtil.verify(token).orElseThrow(() -> new SecurityException("Invalid token"));
   }
 
   public static class JwtClaims {
@@ -1,9 +1,9 @@
 package com.flow.backend.util;
 
 import com.flow.backend.dto.ChatMessageDTO;
+import com.flow.backend.dto.ChatMessageSearchRow;
 import com.flow.backend.model.ChatMessage;
 import com.flow.backend.model.Friendship;
-import java.util.UUID;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -25,25 +25,25 @@ public class ChatMessageUtil {
         message.getCreatedAt(),
         message.getAttachmentUrl(),
         message.getAttachmentType(),
-        message.getAttachmentName());
+        message.getAttachmentName(),
+        message.getSeq());
   }
 
-  public ChatMessageDTO createChatMessageDTO(ChatMessage message, UUID friendshipId) {
-    String displayName =
-        message.getSender().getDisplayName() != null
-            ? message.getSender().getDisplayName()
-            : message.getSender().getName();
-
-    return new ChatMessageDTO(
-        message.getId(),
-        friendshipId,
-        message.getSender().getId(),
-        displayName,
-        message.getSender().getProfilePictureUrl(),
-        message.getContent(),
-        message.getCreatedAt(),
-        message.getAttachmentUrl(),
-        message.getAttachmentType(),
-        message.getAttachmentName());
+  public ChatMessageDTO createChatMessageDTO(ChatMessageSearchRow row) {
+    ChatMessageDTO dto =
+        new ChatMessageDTO(
+            row.getId(),
+            row.getFriendshipId(),
+            row.getSenderId(),
+            row.getSenderName(),
+            row.getSenderPicture(),
+            row.getContent(),
+            row.getCreatedAt(),
+            row.getAttachmentUrl(),
+            row.getAttachmentType(),
+            row.getAttachmentName(),
+            row.getSeq());
+    dto.setHighlight(row.getHighlight());
+    return dto;
   }
 }
@@ -2,11 +2,20 @@ package com.flow.backend.util;
 
 import com.flow.backend.config.JwtProperties;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import javax.crypto.SecretKey;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,10 +24,31 @@ import org.springframework.stereotype.Component;
 @Component
 public class JwtUtil {
 
+  // Set by JwtAuthenticationFilter once the request's token is verified.
+  public static final String TOKEN_ATTRIBUTE = JwtUtil.class.getName() + ".token";
+  public static final String CLAIMS_ATTRIBUTE = JwtUtil.class.getName() + ".claims";
+
   @Autowired private JwtProperties jwtProperties;
 
-  private SecretKey getSigningKey() {
-    return Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes());
+  private SecretKey signingKey;
+  private JwtParser parser;
+
+  // Claims of recently verified tokens, keyed by the token's SHA-256 so the cache never holds a
+  // usable bearer token. Entries are checked against their expiry on every hit.
+  private final ConcurrentHashMap<String, Claims> verified = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void init() {
+    signingKey = Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes());
+    parser = Jwts.parser().verifyWith(signingKey).build();
+  }
+
+  public Optional<Claims> verify(String token) {
+    try {
+      return Optional.of(parse(token));
+    } catch (JwtException | IllegalArgumentException e) {
+      return Optional.empty();
+    }
   }
 
   public String extractUsername(String token) {
@@ -30,12 +60,32 @@ public class JwtUtil {
   }
 
   public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-    final Claims claims = extractAllClaims(token);
+    final Claims claims = parse(token);
     return claimsResolver.apply(claims);
   }
 
-  private Claims extractAllClaims(String token) {
-    return Jwts.parser().verifyWith(getSigningKey()).build().parseSignedClaims(token).getPayload();
+  private Claims parse(String token) {
+    String key = hash(token);
+    Claims claims = verified.get(key);
+    if (claims != null) {
+      if (claims.getExpiration() == null || claims.getExpiration().after(new Date())) return claims;
+      verified.remove(key);
+    }
+    claims = parser.parseSignedClaims(token).getPayload();
+    // Past the bound, start over rather than track recency.
+    if (verified.size() >= jwtProperties.getCacheSize()) verified.clear();
+    verified.put(key, claims);
+    return claims;
+  }
+
+  private static String hash(String token) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
   }
 
   private Boolean isTokenExpired(String token) {
@@ -56,7 +106,7 @@ public class JwtUtil {
         .subject(subject)
         .issuedAt(new Date(System.currentTimeMillis()))
         .expiration(new Date(System.currentTimeMillis() + jwtProperties.getExpiration() * 1000L))
-        .signWith(getSigningKey())
+        .signWith(signingKey)
         .compact();
   }
 
@@ -66,10 +116,6 @@ public class JwtUtil {
   }
 
   public Boolean validateToken(String token) {
-    try {
-      return !isTokenExpired(token);
-    } catch (Exception e) {
-      return false;
-    }
+    return verify(token).isPresent();
   }
 }
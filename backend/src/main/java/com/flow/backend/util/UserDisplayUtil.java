@@ -1,5 +1,6 @@
 package com.flow.backend.util;
 
+import com.flow.backend.dto.UserSnapshot;
 import com.flow.backend.model.User;
 import org.springframework.stereotype.Component;
 
@@ -15,4 +16,8 @@ public class UserDisplayUtil {
     if (user == null) return defaultName;
     return user.getDisplayName() != null ? user.getDisplayName() : user.getName();
   }
+
+  public UserSnapshot snapshot(User user) {
+    return new UserSnapshot(user.getId(), getDisplayName(user), user.getProfilePictureUrl());
+  }
 }
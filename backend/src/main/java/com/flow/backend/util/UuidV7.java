@@ -0,0 +1,32 @@
+package com.flow.backend.util;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class UuidV7 {
+
+  // Upper 48 bits of the timestamp field hold unix millis, lower 12 bits the per-millisecond
+  // counter (RFC 9562 method 1). When the counter overflows it carries into the millis, which
+  // keeps ids strictly increasing under bursts at the cost of running slightly ahead of the clock.
+  private static final AtomicLong LAST = new AtomicLong();
+
+  private UuidV7() {}
+
+  public static UUID generate() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long now = System.currentTimeMillis() << 12;
+    long prev;
+    long next;
+    do {
+      prev = LAST.get();
+      next = now > prev ? now | random.nextInt(1 << 11) : prev + 1;
+    } while (!LAST.compareAndSet(prev, next));
+
+    long millis = next >>> 12;
+    long counter = next & 0xFFFL;
+    long msb = (millis << 16) | 0x7000L | counter;
+    long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+    return new UUID(msb, lsb);
+  }
+}